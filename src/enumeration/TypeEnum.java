@@ -1,5 +1,6 @@
 package enumeration;
 
 public enum TypeEnum {
-	IDENTIFIER, NUMBER, PLUS, MINUS, MULT, DIV, POWER, MOD, OPEN_BRACK, CLOSE_BRACK
+	IDENTIFIER, NUMBER, PLUS, MINUS, MULT, DIV, POWER, MOD, OPEN_BRACK, CLOSE_BRACK, LESS, LESS_EQUAL, GREATER,
+	GREATER_EQUAL, EQUAL, NOT_EQUAL, AND, OR, IF, COMMA
 }
@@ -0,0 +1,16 @@
+package exception;
+
+public class EvaluationException extends Exception {
+	private static final long serialVersionUID = 1L;
+
+	private String formula;
+
+	public EvaluationException(String formula, Throwable cause) {
+		super("could not evaluate " + formula + ": " + cause, cause);
+		this.formula = formula;
+	}
+
+	public String getFormula() {
+		return formula;
+	}
+}
@@ -0,0 +1,53 @@
+package parser;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import enumeration.TypeEnum;
+
+/**
+ * A lexical or syntactic error found while validating an expression.
+ * 
+ * @author mauren
+ */
+public class Diagnostic {
+	private int initIndex;
+	private String message;
+	private Set<TypeEnum> expected;
+	
+	/**
+	 * Constructs a new diagnostic.
+	 * 
+	 * @param initIndex
+	 *            index of the expression where the error was found.
+	 * @param message
+	 *            error description.
+	 * @param expected
+	 *            token types which would have been accepted at that index.
+	 */
+	public Diagnostic(int initIndex, String message, Set<TypeEnum> expected) {
+		this.initIndex = initIndex;
+		this.message = message;
+		EnumSet<TypeEnum> types = EnumSet.noneOf(TypeEnum.class);
+		types.addAll(expected);
+		this.expected = Collections.unmodifiableSet(types);
+	}
+	
+	public int getInitIndex() {
+		return initIndex;
+	}
+	
+	public String getMessage() {
+		return message;
+	}
+	
+	public Set<TypeEnum> getExpected() {
+		return expected;
+	}
+	
+	@Override
+	public String toString() {
+		return message + " at " + initIndex;
+	}
+}
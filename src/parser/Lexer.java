@@ -0,0 +1,327 @@
+package parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.EnumSet;
+import java.util.List;
+
+import enumeration.TypeEnum;
+import exception.LexicalException;
+
+/**
+ * Splits an expression into tokens, one at a time. The expression may be read
+ * from a {@link CharSequence}, a {@link Reader} or a {@link ByteBuffer}, and
+ * the lexer itself never copies it as a whole. Whitespace separates tokens and
+ * is otherwise ignored.
+ * 
+ * Tokens are only kept in memory by whoever reads them:
+ * {@link Parser#lexicalVerifier()} keeps all of them in a list, which for
+ * large inputs takes more memory than the expression itself, while
+ * {@link TreeBuilder#build(Lexer)} parses them as they are read.
+ * 
+ * Token indexes are counted in characters from the start of the input.
+ * 
+ * @author mauren
+ */
+public class Lexer {
+	private static final int BUFFER_SIZE = 8192;
+	
+	private CharSequence sequence;
+	private Reader reader;
+	private ByteBuffer bytes;
+	private CharsetDecoder decoder;
+	private CharBuffer buffer;
+	private int pos = 0;
+	private List<Diagnostic> diagnostics;
+	private boolean failed = false;
+	
+	/**
+	 * Constructs a new lexer reading from a character sequence.
+	 * 
+	 * @param sequence
+	 *            the expression.
+	 */
+	public Lexer(CharSequence sequence) {
+		this.sequence = sequence;
+	}
+	
+	/**
+	 * Constructs a new lexer reading from a reader, up to its end. The reader
+	 * is not closed.
+	 * 
+	 * @param reader
+	 *            reader for the expression.
+	 */
+	public Lexer(Reader reader) {
+		this.reader = reader;
+		this.buffer = CharBuffer.allocate(BUFFER_SIZE);
+		this.buffer.flip();
+	}
+	
+	/**
+	 * Constructs a new lexer reading the UTF-8 (or ASCII) encoded bytes from
+	 * the position of the buffer up to its limit. The position of the buffer
+	 * itself is not changed, so it may be, for instance, a memory-mapped file.
+	 * Malformed bytes are read as unrecognized characters.
+	 * 
+	 * @param bytes
+	 *            buffer holding the expression.
+	 */
+	public Lexer(ByteBuffer bytes) {
+		this.bytes = bytes.duplicate();
+		this.decoder = Charset.forName("UTF-8").newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.buffer = CharBuffer.allocate(BUFFER_SIZE);
+		this.buffer.flip();
+	}
+	
+	/**
+	 * Makes unrecognized characters be added to the given list and skipped,
+	 * instead of making {@link #next()} throw an exception. A failure to read
+	 * the expression is added too, and ends it.
+	 * 
+	 * @param diagnostics
+	 *            list where unrecognized characters and read failures are
+	 *            added, or null to throw an exception at the first one.
+	 */
+	public void setDiagnostics(List<Diagnostic> diagnostics) {
+		this.diagnostics = diagnostics;
+	}
+	
+	/**
+	 * Reads the next token.
+	 * 
+	 * @return the next token, or null at the end of the expression.
+	 * @throws LexicalException
+	 *             when an unrecognized lexem is found and diagnostics are not
+	 *             being collected, or when the expression cannot be read.
+	 */
+	public Token next() throws LexicalException {
+		if (this.failed) {
+			return null;
+		}
+		
+		try {
+			int c = this.peek();
+			while (c != -1) {
+				int initIndex = this.pos;
+				char currChar = this.read();
+				
+				if (isLetter(currChar)) {
+					// Identifiers may contain digits after the first letter
+					StringBuilder tk = new StringBuilder().append(currChar);
+					c = this.peek();
+					while (c != -1 && (isLetter((char) c) || isDigit((char) c))) {
+						tk.append(this.read());
+						c = this.peek();
+					}
+					
+					return this.createToken(tk.toString(), TypeEnum.IDENTIFIER, initIndex);
+				} else if (isDigit(currChar) || currChar == '.') {
+					StringBuilder tk = new StringBuilder().append(currChar);
+					c = this.peek();
+					while (c != -1 && (isDigit((char) c) || c == '.')) {
+						tk.append(this.read());
+						c = this.peek();
+					}
+					
+					return this.createToken(tk.toString(), TypeEnum.NUMBER, initIndex);
+				} else if (!Character.isWhitespace(currChar)) {
+					TypeEnum type = this.operator(currChar);
+					if (type != null) {
+						String text = String.valueOf(currChar);
+						if (this.pos - initIndex > 1) {
+							text += "=";
+						}
+						
+						return this.createToken(text, type, initIndex);
+					}
+					
+					if (this.diagnostics == null) {
+						throw new LexicalException("Unrecognized character: " + currChar);
+					}
+					
+					this.diagnostics.add(new Diagnostic(initIndex, "Unrecognized character: " + currChar, EnumSet
+							.noneOf(TypeEnum.class)));
+				}
+				
+				c = this.peek();
+			}
+			
+			return null;
+		} catch (IOException e) {
+			this.failed = true;
+			if (this.diagnostics == null) {
+				throw new LexicalException("Could not read the expression: " + e.getMessage(), e);
+			}
+			
+			this.diagnostics.add(new Diagnostic(this.pos, "Could not read the expression: " + e.getMessage(),
+					EnumSet.noneOf(TypeEnum.class)));
+			return null;
+		}
+	}
+	
+	/**
+	 * Recognizes an operator, bracket or comma. The equal sign of two
+	 * characters long operators is consumed too.
+	 * 
+	 * @param currChar
+	 *            the character already read.
+	 * @return the token type, or null when it is not recognized.
+	 * @throws IOException
+	 *             when the expression cannot be read.
+	 */
+	private TypeEnum operator(char currChar) throws IOException {
+		switch (currChar) {
+		case '+':
+			return TypeEnum.PLUS;
+		case '-':
+			return TypeEnum.MINUS;
+		case '*':
+			return TypeEnum.MULT;
+		case '/':
+			return TypeEnum.DIV;
+		case '%':
+			return TypeEnum.MOD;
+		case '^':
+			return TypeEnum.POWER;
+		case '(':
+			return TypeEnum.OPEN_BRACK;
+		case ')':
+			return TypeEnum.CLOSE_BRACK;
+		case ',':
+			return TypeEnum.COMMA;
+		case '<':
+			return this.readEqual() ? TypeEnum.LESS_EQUAL : TypeEnum.LESS;
+		case '>':
+			return this.readEqual() ? TypeEnum.GREATER_EQUAL : TypeEnum.GREATER;
+		case '=':
+			return this.readEqual() ? TypeEnum.EQUAL : null;
+		case '!':
+			return this.readEqual() ? TypeEnum.NOT_EQUAL : null;
+		default:
+			return null;
+		}
+	}
+	
+	/**
+	 * Consumes the next character when it is an equal sign.
+	 * 
+	 * @return whether an equal sign was consumed.
+	 * @throws IOException
+	 *             when the expression cannot be read.
+	 */
+	private boolean readEqual() throws IOException {
+		if (this.peek() == '=') {
+			this.read();
+			return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Creates a token, recognizing keywords among identifiers.
+	 * 
+	 * @param text
+	 *            token string value.
+	 * @param type
+	 *            token type.
+	 * @param initIndex
+	 *            start index where the token was found.
+	 * @return a new instance of {@link Token}.
+	 */
+	private Token createToken(String text, TypeEnum type, int initIndex) {
+		if (type == TypeEnum.IDENTIFIER) {
+			if (text.equals("if")) {
+				type = TypeEnum.IF;
+			} else if (text.equals("and")) {
+				type = TypeEnum.AND;
+			} else if (text.equals("or")) {
+				type = TypeEnum.OR;
+			}
+		}
+		
+		Token token = new Token();
+		token.setText(text);
+		token.setType(type);
+		token.setInitIndex(initIndex);
+		return token;
+	}
+	
+	private static boolean isLetter(char c) {
+		return Character.toLowerCase(c) >= 'a' && Character.toLowerCase(c) <= 'z';
+	}
+	
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+	
+	/**
+	 * Gets the next character, without consuming it.
+	 * 
+	 * @return the next character, or -1 at the end of the expression.
+	 * @throws IOException
+	 *             when the expression cannot be read.
+	 */
+	private int peek() throws IOException {
+		if (this.sequence != null) {
+			return this.pos < this.sequence.length() ? this.sequence.charAt(this.pos) : -1;
+		}
+		
+		if (!this.buffer.hasRemaining() && !this.fill()) {
+			return -1;
+		}
+		
+		return this.buffer.get(this.buffer.position());
+	}
+	
+	/**
+	 * Consumes the next character. Must only be called after {@link #peek()}
+	 * has found one.
+	 * 
+	 * @return the next character.
+	 */
+	private char read() {
+		char c;
+		if (this.sequence != null) {
+			c = this.sequence.charAt(this.pos);
+		} else {
+			c = this.buffer.get();
+		}
+		
+		this.pos++;
+		return c;
+	}
+	
+	/**
+	 * Reads the next chunk of the expression into the buffer.
+	 * 
+	 * @return whether any character was read.
+	 * @throws IOException
+	 *             when the expression cannot be read.
+	 */
+	private boolean fill() throws IOException {
+		this.buffer.clear();
+		
+		if (this.reader != null) {
+			int count = 0;
+			while (count == 0) {
+				count = this.reader.read(this.buffer);
+			}
+		} else if (this.bytes.hasRemaining()) {
+			this.decoder.decode(this.bytes, this.buffer, true);
+			if (!this.bytes.hasRemaining()) {
+				this.decoder.flush(this.buffer);
+			}
+		}
+		
+		this.buffer.flip();
+		return this.buffer.hasRemaining();
+	}
+}
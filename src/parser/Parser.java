@@ -3,8 +3,16 @@ package parser;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
+import tree.Evaluator;
+import tree.Node;
+import tree.ParallelEvaluator;
 import util.Utils;
 import util.ValueMap;
 import enumeration.TypeEnum;
@@ -17,10 +25,14 @@ import exception.ParsingException;
  * @author mauren
  */
 public class Parser {
-	private String expression;
+	private CharSequence expression;
+	private Lexer lexer;
 	private int lookahead = 0;
 	private int roundingPrecision;
 	private RoundingMode roundingMode;
+	private ForkJoinPool pool;
+	private long costThreshold;
+	private boolean evaluating = true;
 	
 	/**
 	 * Constructs a new parser object for given expression, with a rounding
@@ -30,7 +42,7 @@ public class Parser {
 	 *            expression to be parsed and evaluated.
 	 */
 	public Parser(String expression) {
-		this(expression, 10);
+		this((CharSequence) expression);
 	}
 	
 	/**
@@ -41,7 +53,7 @@ public class Parser {
 	 *            expression to be parsed and evaluated.
 	 */
 	public Parser(String expression, int roundingPrecision) {
-		this(expression, roundingPrecision, RoundingMode.HALF_EVEN);
+		this((CharSequence) expression, roundingPrecision);
 	}
 	
 	/**
@@ -52,169 +64,196 @@ public class Parser {
 	 *            expression to be parsed and evaluated.
 	 */
 	public Parser(String expression, int roundingPrecision, RoundingMode roundingMode) {
+		this((CharSequence) expression, roundingPrecision, roundingMode);
+	}
+	
+	/**
+	 * Constructs a new parser object for given expression, with a rounding
+	 * precision of 10 and a rounding mode of HALF_EVEN (banker's rounding).
+	 * 
+	 * @param expression
+	 *            expression to be parsed and evaluated.
+	 */
+	public Parser(CharSequence expression) {
+		this(expression, 10);
+	}
+	
+	/**
+	 * Constructs a new parser object for given expression, with the specified
+	 * rounding precision and a rounding mode of HALF_EVEN (banker's rounding).
+	 * 
+	 * @param expression
+	 *            expression to be parsed and evaluated.
+	 */
+	public Parser(CharSequence expression, int roundingPrecision) {
+		this(expression, roundingPrecision, RoundingMode.HALF_EVEN);
+	}
+	
+	/**
+	 * Constructs a new parser object for given expression, with the specified
+	 * rounding precision and the specified rounding mode.
+	 * 
+	 * @param expression
+	 *            expression to be parsed and evaluated.
+	 */
+	public Parser(CharSequence expression, int roundingPrecision, RoundingMode roundingMode) {
 		this.expression = expression;
 		this.roundingPrecision = roundingPrecision;
 		this.roundingMode = roundingMode;
 	}
 	
 	/**
-	 * Creates a token.
+	 * Constructs a new parser object for the expression read by the given
+	 * lexer, with a rounding precision of 10 and a rounding mode of HALF_EVEN
+	 * (banker's rounding). Since the lexer reads its input only once, the
+	 * expression may only be verified once.
 	 * 
-	 * @param text
-	 *            token string value.
-	 * @param type
-	 *            token type.
-	 * @param initIndex
-	 *            start index where the token was found.
-	 * @return a new instance of {@link Token}.
+	 * @param lexer
+	 *            lexer reading the expression to be parsed and evaluated.
+	 */
+	public Parser(Lexer lexer) {
+		this(lexer, 10);
+	}
+	
+	/**
+	 * Constructs a new parser object for the expression read by the given
+	 * lexer, with the specified rounding precision and a rounding mode of
+	 * HALF_EVEN (banker's rounding). Since the lexer reads its input only
+	 * once, the expression may only be verified once.
+	 * 
+	 * @param lexer
+	 *            lexer reading the expression to be parsed and evaluated.
+	 */
+	public Parser(Lexer lexer, int roundingPrecision) {
+		this(lexer, roundingPrecision, RoundingMode.HALF_EVEN);
+	}
+	
+	/**
+	 * Constructs a new parser object for the expression read by the given
+	 * lexer, with the specified rounding precision and the specified rounding
+	 * mode. Since the lexer reads its input only once, the expression may only
+	 * be verified once.
+	 * 
+	 * @param lexer
+	 *            lexer reading the expression to be parsed and evaluated.
 	 */
-	private Token createToken(String text, TypeEnum type, int initIndex) {
-		Token token = new Token();
-		token.setText(text);
-		token.setType(type);
-		token.setInitIndex(initIndex);
-		return token;
+	public Parser(Lexer lexer, int roundingPrecision, RoundingMode roundingMode) {
+		this.lexer = lexer;
+		this.roundingPrecision = roundingPrecision;
+		this.roundingMode = roundingMode;
 	}
 	
 	/**
-	 * Verifies lexically the expression passed.
+	 * Enables parallel evaluation. Instead of being evaluated while parsed, the
+	 * expression is first built into a tree by {@link TreeBuilder}, and the
+	 * independent subtrees whose estimated cost reaches the given threshold
+	 * are evaluated in parallel on the given pool. The result is the same as
+	 * the one of sequential evaluation.
+	 * 
+	 * @param pool
+	 *            pool where subtrees are evaluated, or null to evaluate
+	 *            sequentially.
+	 * @param costThreshold
+	 *            minimum estimated cost for a subtree to be evaluated in
+	 *            parallel.
+	 */
+	public void setParallelEvaluation(ForkJoinPool pool, long costThreshold) {
+		this.pool = pool;
+		this.costThreshold = costThreshold;
+	}
+	
+	/**
+	 * Verifies lexically the expression passed. Every token is kept in the
+	 * list returned, so for large expressions {@link #eval(ValueMap)} and
+	 * {@link #validate()}, which parse the tokens as they are read, take far
+	 * less memory.
 	 * 
 	 * @return a list of tokens recognized.
 	 * @throws LexicalException
 	 *             when an unrecognized lexem is found.
 	 */
 	public LinkedList<Token> lexicalVerifier() throws LexicalException {
-		LinkedList<Token> tokens = new LinkedList<Token>();
-		int pos = 0;
-		
-		char currChar;
-		StringBuilder tk = new StringBuilder();
-		TypeEnum type = null;
-		int initIndex = pos;
-		while (pos < this.expression.length()) {
-			currChar = this.expression.charAt(pos);
-			
-			if (Character.toLowerCase(currChar) >= 'a' && Character.toLowerCase(currChar) <= 'z') {
-				if (!tk.toString().isEmpty() && Utils.nvl(type, TypeEnum.IDENTIFIER) != TypeEnum.IDENTIFIER) {
-					tokens.add(this.createToken(tk.toString(), type, initIndex));
-					tk = new StringBuilder();
-					initIndex = pos;
-				}
-				
-				tk.append(currChar);
-				type = TypeEnum.IDENTIFIER;
-			} else if (currChar >= '0' && currChar <= '9') {
-				if (!tk.toString().isEmpty() && Utils.nvl(type, TypeEnum.NUMBER) != TypeEnum.NUMBER) {
-					if (type == TypeEnum.IDENTIFIER) {
-						tk.append(currChar);
-					} else {
-						tokens.add(this.createToken(tk.toString(), type, initIndex));
-						tk = new StringBuilder();
-						initIndex = pos;
-						
-						tk.append(currChar);
-						type = TypeEnum.NUMBER;
-					}
-				} else {
-					tk.append(currChar);
-					type = TypeEnum.NUMBER;
-				}
-			} else if (currChar == '.') {
-				if (!tk.toString().isEmpty() && Utils.nvl(type, TypeEnum.NUMBER) != TypeEnum.NUMBER) {
-					tokens.add(this.createToken(tk.toString(), type, initIndex));
-					tk = new StringBuilder();
-					initIndex = pos;
-				}
-				
-				tk.append(currChar);
-				type = TypeEnum.NUMBER;
-			} else if (currChar == '+') {
-				if (!tk.toString().isEmpty()) {
-					tokens.add(this.createToken(tk.toString(), type, initIndex));
-					tk = new StringBuilder();
-					initIndex = pos;
-				}
-				
-				tk.append(currChar);
-				type = TypeEnum.PLUS;
-			} else if (currChar == '-') {
-				if (!tk.toString().isEmpty()) {
-					tokens.add(this.createToken(tk.toString(), type, initIndex));
-					tk = new StringBuilder();
-					initIndex = pos;
-				}
-				
-				tk.append(currChar);
-				type = TypeEnum.MINUS;
-			} else if (currChar == '*') {
-				if (!tk.toString().isEmpty()) {
-					tokens.add(this.createToken(tk.toString(), type, initIndex));
-					tk = new StringBuilder();
-					initIndex = pos;
-				}
-				
-				tk.append(currChar);
-				type = TypeEnum.MULT;
-			} else if (currChar == '/') {
-				if (!tk.toString().isEmpty()) {
-					tokens.add(this.createToken(tk.toString(), type, initIndex));
-					tk = new StringBuilder();
-					initIndex = pos;
-				}
-				
-				tk.append(currChar);
-				type = TypeEnum.DIV;
-			} else if (currChar == '%') {
-				if (!tk.toString().isEmpty()) {
-					tokens.add(this.createToken(tk.toString(), type, initIndex));
-					tk = new StringBuilder();
-					initIndex = pos;
-				}
-				
-				tk.append(currChar);
-				type = TypeEnum.MOD;
-			} else if (currChar == '^') {
-				if (!tk.toString().isEmpty()) {
-					tokens.add(this.createToken(tk.toString(), type, initIndex));
-					tk = new StringBuilder();
-					initIndex = pos;
-				}
-				
-				tk.append(currChar);
-				type = TypeEnum.POWER;
-			} else if (currChar == '(') {
-				if (!tk.toString().isEmpty()) {
-					tokens.add(this.createToken(tk.toString(), type, initIndex));
-					tk = new StringBuilder();
-					initIndex = pos;
-				}
-				
-				tk.append(currChar);
-				type = TypeEnum.OPEN_BRACK;
-			} else if (currChar == ')') {
-				if (!tk.toString().isEmpty()) {
-					tokens.add(this.createToken(tk.toString(), type, initIndex));
-					tk = new StringBuilder();
-					initIndex = pos;
-				}
-				
-				tk.append(currChar);
-				type = TypeEnum.CLOSE_BRACK;
-			} else {
-				throw new LexicalException("Unrecognized character: " + currChar);
-			}
-			
-			pos++;
-		}
+		Lexer lexer = this.lexer();
 		
-		if (!tk.toString().isEmpty()) {
-			tokens.add(this.createToken(tk.toString(), type, initIndex));
+		LinkedList<Token> tokens = new LinkedList<Token>();
+		Token tk = lexer.next();
+		while (tk != null) {
+			tokens.add(tk);
+			tk = lexer.next();
 		}
 		
 		this.lookahead = 0;
 		return tokens;
 	}
 	
+	/**
+	 * Gets a lexer for the expression. A new one is created for character
+	 * sequences, which can be read many times.
+	 * 
+	 * @return the lexer.
+	 */
+	private Lexer lexer() {
+		if (this.expression != null) {
+			return new Lexer(this.expression);
+		}
+		
+		return this.lexer;
+	}
+	
+	/**
+	 * Validates the expression without evaluating it, so no variable values
+	 * are needed. Instead of stopping at the first error, every lexical and
+	 * syntactic error found is reported, and no exception is thrown: a
+	 * failure to read the expression is reported as an error too. Tokens are
+	 * parsed as they are read, and never kept all at once.
+	 * 
+	 * @return the errors found, ordered by position, or an empty list when
+	 *         the expression is valid.
+	 */
+	public List<Diagnostic> validate() {
+		List<Diagnostic> diagnostics = new ArrayList<Diagnostic>();
+		new TreeBuilder().validate(this.lexer(), diagnostics);
+		
+		Collections.sort(diagnostics, new Comparator<Diagnostic>() {
+			@Override
+			public int compare(Diagnostic d1, Diagnostic d2) {
+				return Integer.compare(d1.getInitIndex(), d2.getInitIndex());
+			}
+		});
+		
+		return diagnostics;
+	}
+	
+	/**
+	 * Lexically verifies, parses and evaluates the expression. Tokens are
+	 * parsed into a tree as they are read, and never kept all at once, so this
+	 * suits large expressions better than evaluating the list returned by
+	 * {@link #lexicalVerifier()}. The result is the same.
+	 * 
+	 * @param values
+	 *            values to translate identifiers.
+	 * @return value of expression.
+	 * @throws LexicalException
+	 *             when an unrecognized lexem is found.
+	 * @throws ParsingException
+	 *             when an unexpected token is found.
+	 */
+	public BigDecimal eval(ValueMap values) throws LexicalException, ParsingException {
+		Node root = new TreeBuilder().build(this.lexer());
+		
+		Evaluator evaluator;
+		if (this.pool != null) {
+			evaluator = new ParallelEvaluator(values, this.roundingPrecision, this.roundingMode, this.pool,
+					this.costThreshold);
+		} else {
+			evaluator = new Evaluator(values, this.roundingPrecision, this.roundingMode);
+		}
+		
+		BigDecimal result = evaluator.evaluate(root);
+		result = result.setScale(this.roundingPrecision, this.roundingMode);
+		return result;
+	}
+	
 	/**
 	 * Initiates the parsing phase.
 	 * 
@@ -226,7 +265,21 @@ public class Parser {
 	 * @throws Exception
 	 */
 	public BigDecimal eval(LinkedList<Token> tokens, ValueMap values) throws ParsingException {
-		BigDecimal result = this.exp(tokens, values);
+		BigDecimal result;
+		if (this.pool != null) {
+			ParallelEvaluator evaluator = new ParallelEvaluator(values, this.roundingPrecision, this.roundingMode,
+					this.pool, this.costThreshold);
+			result = evaluator.evaluate(new TreeBuilder().build(tokens));
+		} else {
+			this.evaluating = true;
+			result = this.exp(tokens, values);
+			
+			// Rejects whatever is left after a complete expression
+			if (this.lookahead < tokens.size()) {
+				throw new ParsingException("unexpected token at " + tokens.get(this.lookahead).getInitIndex());
+			}
+		}
+		
 		result = result.setScale(this.roundingPrecision, this.roundingMode);
 		return result;
 	}
@@ -245,6 +298,63 @@ public class Parser {
 	 */
 	public BigDecimal exp(LinkedList<Token> tokens, ValueMap values) throws ParsingException {
 		BigDecimal value = BigDecimal.ZERO;
+		value = this.interm5(tokens, values, value);
+		value = this.expLevel6(tokens, values, value);
+		
+		return value;
+	}
+	
+	/**
+	 * Intermediate parsing, level 5.
+	 * 
+	 * @param tokens
+	 *            the tokens to be parsed.
+	 * @param values
+	 *            variables values.
+	 * @param value
+	 *            previous expression parsing value.
+	 * @return the current value for parsed expression.
+	 * @throws ParsingException
+	 */
+	public BigDecimal interm5(LinkedList<Token> tokens, ValueMap values, BigDecimal value) throws ParsingException {
+		value = this.interm4(tokens, values, value);
+		value = this.expLevel5(tokens, values, value);
+		
+		return value;
+	}
+	
+	/**
+	 * Intermediate parsing, level 4.
+	 * 
+	 * @param tokens
+	 *            the tokens to be parsed.
+	 * @param values
+	 *            variables values.
+	 * @param value
+	 *            previous expression parsing value.
+	 * @return the current value for parsed expression.
+	 * @throws ParsingException
+	 */
+	public BigDecimal interm4(LinkedList<Token> tokens, ValueMap values, BigDecimal value) throws ParsingException {
+		value = this.interm3(tokens, values, value);
+		value = this.expLevel4(tokens, values, value);
+		
+		return value;
+	}
+	
+	/**
+	 * Intermediate parsing, level 3.
+	 * 
+	 * @param tokens
+	 *            the tokens to be parsed.
+	 * @param values
+	 *            variables values.
+	 * @param value
+	 *            previous expression parsing value.
+	 * @return the current value for parsed expression.
+	 * @throws ParsingException
+	 */
+	public BigDecimal interm3(LinkedList<Token> tokens, ValueMap values, BigDecimal value) throws ParsingException {
 		value = this.interm1(tokens, values, value);
 		value = this.expLevel3(tokens, values, value);
 		
@@ -318,7 +428,9 @@ public class Parser {
 				operand = this.expLevel1(tokens, values, operand);
 				
 				// Parses current operation
-				value = value.pow(operand.intValue());
+				if (this.evaluating) {
+					value = value.pow(operand.intValue());
+				}
 			}
 		}
 		
@@ -355,7 +467,10 @@ public class Parser {
 				op2 = this.interm2(tokens, values, value);
 				
 				// Parses current operation
-				value = op1.multiply(op2);
+				if (this.evaluating) {
+					value = op1.multiply(op2);
+				}
+				
 				value = this.expLevel2(tokens, values, value);
 			} else if (tk.getType() == TypeEnum.DIV) {
 				this.lookahead++;
@@ -365,7 +480,10 @@ public class Parser {
 				op2 = this.interm2(tokens, values, value);
 				
 				// Parses current operation
-				value = op1.divide(op2, this.roundingPrecision, this.roundingMode);
+				if (this.evaluating) {
+					value = op1.divide(op2, this.roundingPrecision, this.roundingMode);
+				}
+				
 				value = this.expLevel2(tokens, values, value);
 			} else if (tk.getType() == TypeEnum.MOD) {
 				this.lookahead++;
@@ -376,7 +494,10 @@ public class Parser {
 				op2 = this.interm2(tokens, values, value);
 				
 				// Current op
-				value = op1.remainder(op2, new MathContext(this.roundingPrecision, this.roundingMode));
+				if (this.evaluating) {
+					value = op1.remainder(op2, new MathContext(this.roundingPrecision, this.roundingMode));
+				}
+				
 				value = this.expLevel2(tokens, values, value);
 			}
 		}
@@ -415,7 +536,10 @@ public class Parser {
 				op2 = this.interm1(tokens, values, op1);
 				
 				// Parses current operation
-				value = op1.add(op2);
+				if (this.evaluating) {
+					value = op1.add(op2);
+				}
+				
 				value = this.expLevel3(tokens, values, value);
 			} else if (tk.getType() == TypeEnum.MINUS) {
 				this.lookahead++;
@@ -425,7 +549,10 @@ public class Parser {
 				op2 = this.interm1(tokens, values, op1);
 				
 				// Parses current operation
-				value = op1.subtract(op2);
+				if (this.evaluating) {
+					value = op1.subtract(op2);
+				}
+				
 				value = this.expLevel3(tokens, values, value);
 			}
 		}
@@ -433,6 +560,220 @@ public class Parser {
 		return value;
 	}
 	
+	/**
+	 * Parses the level 4 operators (comparison signs). Each comparison
+	 * evaluates to one when true and to zero when false.
+	 * 
+	 * @param tokens
+	 *            tokens recognized by the lexical verifier.
+	 * @param values
+	 *            values to translate identifiers.
+	 * @param value
+	 *            the last processed value.
+	 * @return value for the evaluated operation.
+	 * @throws ParsingException
+	 *             when an unexpected token is found.
+	 */
+	public BigDecimal expLevel4(LinkedList<Token> tokens, ValueMap values, BigDecimal value) throws ParsingException {
+		Token tk = null;
+		
+		// Verifies if there is a next token
+		if (this.lookahead < tokens.size()) {
+			tk = tokens.get(this.lookahead);
+		}
+		
+		if (tk != null) {
+			TypeEnum type = tk.getType();
+			if (type == TypeEnum.LESS || type == TypeEnum.LESS_EQUAL || type == TypeEnum.GREATER
+					|| type == TypeEnum.GREATER_EQUAL || type == TypeEnum.EQUAL || type == TypeEnum.NOT_EQUAL) {
+				this.lookahead++;
+				BigDecimal op1 = value;
+				BigDecimal op2;
+				// Executes parsing for higher precedence operations
+				op2 = this.interm3(tokens, values, op1);
+				
+				// Parses current operation
+				if (this.evaluating) {
+					value = Utils.toDecimal(Utils.compare(type, op1, op2));
+				}
+				
+				value = this.expLevel4(tokens, values, value);
+			}
+		}
+		
+		return value;
+	}
+	
+	/**
+	 * Parses the level 5 operator (and). The right operand is only evaluated
+	 * when the left one is true.
+	 * 
+	 * @param tokens
+	 *            tokens recognized by the lexical verifier.
+	 * @param values
+	 *            values to translate identifiers.
+	 * @param value
+	 *            the last processed value.
+	 * @return value for the evaluated operation.
+	 * @throws ParsingException
+	 *             when an unexpected token is found.
+	 */
+	public BigDecimal expLevel5(LinkedList<Token> tokens, ValueMap values, BigDecimal value) throws ParsingException {
+		Token tk = null;
+		
+		// Verifies if there is a next token
+		if (this.lookahead < tokens.size()) {
+			tk = tokens.get(this.lookahead);
+		}
+		
+		if (tk != null && tk.getType() == TypeEnum.AND) {
+			this.lookahead++;
+			BigDecimal op1 = value;
+			BigDecimal op2;
+			
+			// Parses the right operand, evaluating it only when needed
+			boolean evaluating = this.evaluating;
+			this.evaluating = evaluating && Utils.isTrue(op1);
+			try {
+				op2 = this.interm4(tokens, values, op1);
+			} finally {
+				this.evaluating = evaluating;
+			}
+			
+			// Parses current operation
+			if (this.evaluating) {
+				value = Utils.toDecimal(Utils.isTrue(op1) && Utils.isTrue(op2));
+			}
+			
+			value = this.expLevel5(tokens, values, value);
+		}
+		
+		return value;
+	}
+	
+	/**
+	 * Parses the level 6 operator (or). The right operand is only evaluated
+	 * when the left one is false.
+	 * 
+	 * @param tokens
+	 *            tokens recognized by the lexical verifier.
+	 * @param values
+	 *            values to translate identifiers.
+	 * @param value
+	 *            the last processed value.
+	 * @return value for the evaluated operation.
+	 * @throws ParsingException
+	 *             when an unexpected token is found.
+	 */
+	public BigDecimal expLevel6(LinkedList<Token> tokens, ValueMap values, BigDecimal value) throws ParsingException {
+		Token tk = null;
+		
+		// Verifies if there is a next token
+		if (this.lookahead < tokens.size()) {
+			tk = tokens.get(this.lookahead);
+		}
+		
+		if (tk != null && tk.getType() == TypeEnum.OR) {
+			this.lookahead++;
+			BigDecimal op1 = value;
+			BigDecimal op2;
+			
+			// Parses the right operand, evaluating it only when needed
+			boolean evaluating = this.evaluating;
+			this.evaluating = evaluating && !Utils.isTrue(op1);
+			try {
+				op2 = this.interm5(tokens, values, op1);
+			} finally {
+				this.evaluating = evaluating;
+			}
+			
+			// Parses current operation
+			if (this.evaluating) {
+				value = Utils.toDecimal(Utils.isTrue(op1) || Utils.isTrue(op2));
+			}
+			
+			value = this.expLevel6(tokens, values, value);
+		}
+		
+		return value;
+	}
+	
+	/**
+	 * Parses a conditional, of the form <code>if(condition, a, b)</code>. Only
+	 * the selected branch is evaluated.
+	 * 
+	 * @param tokens
+	 *            tokens recognized by the lexical verifier.
+	 * @param values
+	 *            values to translate identifiers.
+	 * @return value of the selected branch.
+	 * @throws ParsingException
+	 *             when an unexpected token is found.
+	 */
+	public BigDecimal conditional(LinkedList<Token> tokens, ValueMap values) throws ParsingException {
+		this.expect(tokens, TypeEnum.IF);
+		this.expect(tokens, TypeEnum.OPEN_BRACK);
+		BigDecimal condition = this.exp(tokens, values);
+		this.expect(tokens, TypeEnum.COMMA);
+		
+		boolean evaluating = this.evaluating;
+		boolean selected = evaluating && Utils.isTrue(condition);
+		BigDecimal value1;
+		BigDecimal value2;
+		try {
+			this.evaluating = selected;
+			value1 = this.exp(tokens, values);
+			this.expect(tokens, TypeEnum.COMMA);
+			
+			this.evaluating = evaluating && !selected;
+			value2 = this.exp(tokens, values);
+			this.expect(tokens, TypeEnum.CLOSE_BRACK);
+		} finally {
+			this.evaluating = evaluating;
+		}
+		
+		return selected ? value1 : value2;
+	}
+	
+	/**
+	 * Consumes the next token, which must be of the given type.
+	 * 
+	 * @param tokens
+	 *            tokens recognized by the lexical verifier.
+	 * @param type
+	 *            the expected token type.
+	 * @throws ParsingException
+	 *             when the next token is of another type, or missing.
+	 */
+	private void expect(LinkedList<Token> tokens, TypeEnum type) throws ParsingException {
+		if (this.lookahead >= tokens.size()) {
+			throw new ParsingException("unexpected end of expression at " + endIndex(tokens));
+		}
+		
+		Token tk = tokens.get(this.lookahead);
+		if (tk.getType() != type) {
+			throw new ParsingException("unexpected token at " + tk.getInitIndex());
+		}
+		
+		this.lookahead++;
+	}
+	
+	/**
+	 * Gets the index right after the last token, where the expression ends.
+	 * 
+	 * @param tokens
+	 *            tokens recognized by the lexical verifier.
+	 * @return the end index, or 0 for an empty expression.
+	 */
+	private static int endIndex(LinkedList<Token> tokens) {
+		if (tokens.isEmpty()) {
+			return 0;
+		}
+		
+		Token last = tokens.getLast();
+		return last.getInitIndex() + last.getText().length();
+	}
+	
 	/**
 	 * Parses the terminal token and subexpressions.
 	 * 
@@ -452,53 +793,71 @@ public class Parser {
 			tk = tokens.get(this.lookahead);
 		}
 		
+		if (tk == null) {
+			throw new ParsingException("unexpected end of expression at " + endIndex(tokens));
+		}
+		
 		boolean positive = true;
-		if (tk != null) {
-			if (tk.getType() == TypeEnum.PLUS) {
-				this.lookahead++;
-			} else if (tk.getType() == TypeEnum.MINUS) {
-				this.lookahead++;
-				positive = false;
+		if (tk.getType() == TypeEnum.PLUS) {
+			this.lookahead++;
+		} else if (tk.getType() == TypeEnum.MINUS) {
+			this.lookahead++;
+			positive = false;
+		}
+		
+		if (this.lookahead >= tokens.size()) {
+			throw new ParsingException("unexpected end of expression at " + endIndex(tokens));
+		}
+		
+		tk = tokens.get(this.lookahead);
+		
+		BigDecimal value = null;
+		// Parses the value, depending on terminal type
+		if (tk.getType() == TypeEnum.NUMBER) {
+			this.lookahead++;
+			if (!Utils.isNumber(tk.getText())) {
+				throw new ParsingException("malformed number " + tk.getText() + " at " + tk.getInitIndex());
 			}
 			
+			value = new BigDecimal(tk.getText());
+			
+			if (!positive) {
+				value = value.negate();
+			}
+			
+			return value;
+		} else if (tk.getType() == TypeEnum.IDENTIFIER) {
+			this.lookahead++;
+			
+			// Identifiers are not looked up while not evaluating
+			value = BigDecimal.ZERO;
+			if (this.evaluating) {
+				value = values.get(tk.getText());
+			}
+			
+			if (!positive) {
+				value = value.negate();
+			}
+			
+			return value;
+		} else if (tk.getType() == TypeEnum.IF) {
+			// As a subexpression in brackets, a sign before it is not applied
+			return this.conditional(tokens, values);
+		} else
+		// Parses subexpressions
+		if (tk.getType() == TypeEnum.OPEN_BRACK) {
+			this.lookahead++;
+			
+			value = this.exp(tokens, values);
+			
 			if (this.lookahead >= tokens.size()) {
-				throw new ParsingException("unexpected token at " + tk.getInitIndex());
+				throw new ParsingException("unexpected end of expression at " + endIndex(tokens));
 			}
 			
 			tk = tokens.get(this.lookahead);
-			
-			BigDecimal value = null;
-			// Parses the value, depending on terminal type
-			if (tk.getType() == TypeEnum.NUMBER) {
-				this.lookahead++;
-				value = new BigDecimal(tk.getText());
-				
-				if (!positive) {
-					value = value.negate();
-				}
-				
-				return value;
-			} else if (tk.getType() == TypeEnum.IDENTIFIER) {
+			if (tk.getType() == TypeEnum.CLOSE_BRACK) {
 				this.lookahead++;
-				value = values.get(tk.getText());
-				
-				if (!positive) {
-					value = value.negate();
-				}
-				
 				return value;
-			} else
-			// Parses subexpressions
-			if (tk.getType() == TypeEnum.OPEN_BRACK) {
-				this.lookahead++;
-				
-				value = this.exp(tokens, values);
-				
-				tk = tokens.get(this.lookahead);
-				if (tk.getType() == TypeEnum.CLOSE_BRACK) {
-					this.lookahead++;
-					return value;
-				}
 			}
 		}
 		
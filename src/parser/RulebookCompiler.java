@@ -0,0 +1,112 @@
+package parser;
+
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import tree.InterningNodeFactory;
+import tree.Node;
+import tree.Rulebook;
+import exception.LexicalException;
+import exception.ParsingException;
+
+/**
+ * Compiles a set of named expressions into a single {@link Rulebook}.
+ * Structurally identical subexpressions are merged across all of the
+ * expressions, so that evaluating the rulebook computes each of them only
+ * once.
+ * 
+ * @author mauren
+ */
+public class RulebookCompiler {
+	private int roundingPrecision;
+	private RoundingMode roundingMode;
+	private InterningNodeFactory factory = new InterningNodeFactory();
+	private Map<String, Node> formulas = new LinkedHashMap<String, Node>();
+	
+	/**
+	 * Constructs a new compiler with a rounding precision of 10 and a rounding
+	 * mode of HALF_EVEN (banker's rounding).
+	 */
+	public RulebookCompiler() {
+		this(10);
+	}
+	
+	/**
+	 * Constructs a new compiler with the specified rounding precision and a
+	 * rounding mode of HALF_EVEN (banker's rounding).
+	 * 
+	 * @param roundingPrecision
+	 *            rounding precision used by every expression.
+	 */
+	public RulebookCompiler(int roundingPrecision) {
+		this(roundingPrecision, RoundingMode.HALF_EVEN);
+	}
+	
+	/**
+	 * Constructs a new compiler with the specified rounding precision and
+	 * rounding mode.
+	 * 
+	 * @param roundingPrecision
+	 *            rounding precision used by every expression.
+	 * @param roundingMode
+	 *            rounding mode used by every expression.
+	 */
+	public RulebookCompiler(int roundingPrecision, RoundingMode roundingMode) {
+		this.roundingPrecision = roundingPrecision;
+		this.roundingMode = roundingMode;
+	}
+	
+	/**
+	 * Parses an expression and adds it to the rulebook. An expression
+	 * previously added with the same name is replaced, although its nodes
+	 * are kept for sharing until the compiler is discarded.
+	 * 
+	 * @param name
+	 *            name of the expression result.
+	 * @param expression
+	 *            expression to be compiled.
+	 * @throws LexicalException
+	 *             when an unrecognized lexem is found.
+	 * @throws ParsingException
+	 *             when an unexpected token is found.
+	 */
+	public void add(String name, CharSequence expression) throws LexicalException, ParsingException {
+		Node root = new TreeBuilder(this.factory).build(new Lexer(expression));
+		this.formulas.put(name, root);
+	}
+	
+	/**
+	 * Creates a rulebook with every expression added so far.
+	 * 
+	 * @return the compiled rulebook.
+	 */
+	public Rulebook compile() {
+		return new Rulebook(this.formulas, this.roundingPrecision, this.roundingMode);
+	}
+	
+	/**
+	 * Gets the number of distinct subexpressions among every expression added
+	 * so far. Subexpressions only used by replaced expressions are not
+	 * counted.
+	 * 
+	 * @return the node count.
+	 */
+	public int getNodeCount() {
+		Set<Node> visited = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+		Deque<Node> pending = new ArrayDeque<Node>(this.formulas.values());
+		while (!pending.isEmpty()) {
+			Node node = pending.pop();
+			if (visited.add(node)) {
+				pending.addAll(node.getChildren());
+			}
+		}
+		
+		return visited.size();
+	}
+}
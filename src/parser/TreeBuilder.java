@@ -0,0 +1,580 @@
+package parser;
+
+import java.math.BigDecimal;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import tree.Node;
+import tree.NodeFactory;
+import util.Utils;
+import enumeration.TypeEnum;
+import exception.LexicalException;
+import exception.ParsingException;
+
+/**
+ * Parses a token list, or the tokens read by a {@link Lexer}, into an
+ * expression tree, following the same grammar and operator precedence as
+ * {@link Parser}.
+ * 
+ * @author mauren
+ */
+public class TreeBuilder {
+	/** Tokens which may start a term. */
+	private static final Set<TypeEnum> TERM_START = EnumSet.of(TypeEnum.PLUS, TypeEnum.MINUS, TypeEnum.NUMBER,
+			TypeEnum.IDENTIFIER, TypeEnum.OPEN_BRACK, TypeEnum.IF);
+	/** Tokens which may follow a term. */
+	private static final Set<TypeEnum> OPERATORS = EnumSet.of(TypeEnum.PLUS, TypeEnum.MINUS, TypeEnum.MULT,
+			TypeEnum.DIV, TypeEnum.MOD, TypeEnum.POWER, TypeEnum.LESS, TypeEnum.LESS_EQUAL, TypeEnum.GREATER,
+			TypeEnum.GREATER_EQUAL, TypeEnum.EQUAL, TypeEnum.NOT_EQUAL, TypeEnum.AND, TypeEnum.OR);
+	/** Tokens which may follow an expression inside brackets. */
+	private static final Set<TypeEnum> BRACKET_END = EnumSet.of(TypeEnum.CLOSE_BRACK);
+	/** Tokens which may follow a conditional argument. */
+	private static final Set<TypeEnum> ARGUMENT_END = EnumSet.of(TypeEnum.COMMA, TypeEnum.CLOSE_BRACK);
+	/** Tokens which may start an expression, but not continue one. */
+	private static final Set<TypeEnum> OPERAND_START = EnumSet.of(TypeEnum.NUMBER, TypeEnum.IDENTIFIER,
+			TypeEnum.OPEN_BRACK, TypeEnum.IF);
+	
+	private Iterator<Token> tokens;
+	private Lexer lexer;
+	private LexicalException lexicalError;
+	private Token next;
+	private Token last;
+	private NodeFactory factory;
+	private List<Diagnostic> diagnostics;
+	
+	/**
+	 * Constructs a new tree builder, which creates a new node for every
+	 * subexpression.
+	 */
+	public TreeBuilder() {
+		this(new NodeFactory());
+	}
+	
+	/**
+	 * Constructs a new tree builder using the given node factory.
+	 * 
+	 * @param factory
+	 *            factory for the nodes of built trees.
+	 */
+	public TreeBuilder(NodeFactory factory) {
+		this.factory = factory;
+	}
+	
+	/**
+	 * Builds the expression tree for the given tokens.
+	 * 
+	 * @param tokens
+	 *            tokens recognized by the lexical verifier.
+	 * @return root node of the expression.
+	 * @throws ParsingException
+	 *             when an unexpected token is found.
+	 */
+	public Node build(LinkedList<Token> tokens) throws ParsingException {
+		this.diagnostics = null;
+		this.tokens = tokens.iterator();
+		this.lexer = null;
+		return this.parse();
+	}
+	
+	/**
+	 * Builds the expression tree for the tokens read by the given lexer. The
+	 * tokens are read one at a time, as they are parsed, so they are never
+	 * kept in memory all at once.
+	 * 
+	 * @param lexer
+	 *            lexer reading the expression.
+	 * @return root node of the expression.
+	 * @throws LexicalException
+	 *             when an unrecognized lexem is found.
+	 * @throws ParsingException
+	 *             when an unexpected token is found.
+	 */
+	public Node build(Lexer lexer) throws LexicalException, ParsingException {
+		this.diagnostics = null;
+		this.tokens = null;
+		this.lexer = lexer;
+		this.lexicalError = null;
+		
+		Node root;
+		try {
+			root = this.parse();
+		} catch (ParsingException e) {
+			// The lexical error is what made the tokens end early
+			if (this.lexicalError != null) {
+				throw this.lexicalError;
+			}
+			
+			throw e;
+		}
+		
+		if (this.lexicalError != null) {
+			throw this.lexicalError;
+		}
+		
+		return root;
+	}
+	
+	/**
+	 * Parses the given tokens, reporting every error found instead of
+	 * stopping at the first one. After each error, parsing resumes at the
+	 * next token which fits the grammar, so no exception is ever thrown.
+	 * 
+	 * @param tokens
+	 *            tokens recognized by the lexical verifier.
+	 * @param diagnostics
+	 *            list where the errors are added.
+	 */
+	public void validate(LinkedList<Token> tokens, List<Diagnostic> diagnostics) {
+		this.tokens = tokens.iterator();
+		this.lexer = null;
+		this.validate(diagnostics);
+	}
+	
+	/**
+	 * Parses the tokens read by the given lexer, one at a time, reporting
+	 * every error found instead of stopping at the first one. Lexical errors
+	 * are reported too. After each error, parsing resumes at the next token
+	 * which fits the grammar, so no exception is ever thrown.
+	 * 
+	 * @param lexer
+	 *            lexer reading the expression.
+	 * @param diagnostics
+	 *            list where the errors are added.
+	 */
+	public void validate(Lexer lexer, List<Diagnostic> diagnostics) {
+		lexer.setDiagnostics(diagnostics);
+		this.tokens = null;
+		this.lexer = lexer;
+		this.validate(diagnostics);
+	}
+	
+	/**
+	 * Parses the current tokens, collecting diagnostics.
+	 * 
+	 * @param diagnostics
+	 *            list where the errors are added.
+	 */
+	private void validate(List<Diagnostic> diagnostics) {
+		this.diagnostics = diagnostics;
+		this.lexicalError = null;
+		try {
+			this.parse();
+		} catch (ParsingException e) {
+			// Never thrown while diagnostics are being collected
+			throw new IllegalStateException(e);
+		} finally {
+			this.diagnostics = null;
+		}
+		
+		if (this.lexicalError != null) {
+			// Never thrown while the lexer collects diagnostics
+			throw new IllegalStateException(this.lexicalError);
+		}
+	}
+	
+	/**
+	 * Parses the whole token sequence.
+	 * 
+	 * @return root node of the expression.
+	 * @throws ParsingException
+	 *             when an unexpected token is found.
+	 */
+	private Node parse() throws ParsingException {
+		this.last = null;
+		this.next = this.pull();
+		return this.recover(this.exp(), EnumSet.noneOf(TypeEnum.class));
+	}
+	
+	/**
+	 * Reads a token from the current source. A lexical error ends the tokens
+	 * and is kept, to be thrown once parsing stops.
+	 * 
+	 * @return the token read, or null at the end of the tokens.
+	 */
+	private Token pull() {
+		if (this.lexer == null) {
+			return this.tokens.hasNext() ? this.tokens.next() : null;
+		}
+		
+		if (this.lexicalError != null) {
+			return null;
+		}
+		
+		try {
+			return this.lexer.next();
+		} catch (LexicalException e) {
+			this.lexicalError = e;
+			return null;
+		}
+	}
+	
+	/**
+	 * Gets the next token, without consuming it.
+	 * 
+	 * @return the next token, or null when all of them were consumed.
+	 */
+	private Token peek() {
+		return this.next;
+	}
+	
+	/**
+	 * Consumes the next token.
+	 */
+	private void advance() {
+		this.last = this.next;
+		this.next = this.pull();
+	}
+	
+	/**
+	 * Reports an error. When diagnostics are not being collected, the error
+	 * is thrown instead.
+	 * 
+	 * @param tk
+	 *            the offending token, or null at the end of the expression.
+	 * @param message
+	 *            error description.
+	 * @param expected
+	 *            token types which would have been accepted.
+	 * @throws ParsingException
+	 *             when diagnostics are not being collected.
+	 */
+	private void error(Token tk, String message, Set<TypeEnum> expected) throws ParsingException {
+		int initIndex = 0;
+		if (tk != null) {
+			initIndex = tk.getInitIndex();
+		} else if (this.last != null) {
+			initIndex = this.last.getInitIndex() + this.last.getText().length();
+		}
+		
+		Diagnostic diagnostic = new Diagnostic(initIndex, message, expected);
+		if (this.diagnostics == null) {
+			throw new ParsingException(diagnostic.toString());
+		}
+		
+		// Reports a single error for each position
+		int count = this.diagnostics.size();
+		if (count == 0 || this.diagnostics.get(count - 1).getInitIndex() != initIndex) {
+			this.diagnostics.add(diagnostic);
+		}
+	}
+	
+	/**
+	 * Reports the tokens left after a complete expression and parses past
+	 * them, up to the end of the expression or to one of the given closing
+	 * tokens.
+	 * 
+	 * @param node
+	 *            the expression parsed so far.
+	 * @param closing
+	 *            tokens which may end the expression.
+	 * @return the node for parsed expression.
+	 * @throws ParsingException
+	 *             when diagnostics are not being collected.
+	 */
+	private Node recover(Node node, Set<TypeEnum> closing) throws ParsingException {
+		Set<TypeEnum> expected = EnumSet.copyOf(OPERATORS);
+		expected.addAll(closing);
+		
+		Token tk = this.peek();
+		while (tk != null && !closing.contains(tk.getType())) {
+			this.error(tk, "unexpected token", expected);
+			
+			if (OPERAND_START.contains(tk.getType())) {
+				node = this.exp();
+			} else {
+				// Skips a stray bracket or comma and goes on with the operators
+				this.advance();
+				node = this.orRest(this.andRest(this.comparisonRest(this.sumRest(this.interm1Rest(this
+						.interm2Rest(node))))));
+			}
+			
+			tk = this.peek();
+		}
+		
+		return node;
+	}
+	
+	/**
+	 * Consumes the next token, reporting an error when it is not of the given
+	 * type.
+	 * 
+	 * @param type
+	 *            the expected token type.
+	 * @return whether the token was found.
+	 * @throws ParsingException
+	 *             when diagnostics are not being collected.
+	 */
+	private boolean expect(TypeEnum type) throws ParsingException {
+		Token tk = this.peek();
+		if (tk == null) {
+			this.error(null, "unexpected end of expression", EnumSet.of(type));
+			return false;
+		}
+		
+		if (tk.getType() != type) {
+			this.error(tk, "unexpected token", EnumSet.of(type));
+			return false;
+		}
+		
+		this.advance();
+		return true;
+	}
+	
+	/**
+	 * Expression representation: or operator.
+	 * 
+	 * @return the node for parsed expression.
+	 * @throws ParsingException
+	 */
+	private Node exp() throws ParsingException {
+		return this.orRest(this.conjunction());
+	}
+	
+	/**
+	 * Parses the or operators following an operand.
+	 * 
+	 * @param node
+	 *            the left operand.
+	 * @return the node for parsed expression.
+	 * @throws ParsingException
+	 */
+	private Node orRest(Node node) throws ParsingException {
+		Token tk = this.peek();
+		while (tk != null && tk.getType() == TypeEnum.OR) {
+			this.advance();
+			node = this.factory.logical(TypeEnum.OR, node, this.conjunction());
+			tk = this.peek();
+		}
+		
+		return node;
+	}
+	
+	/**
+	 * Conjunction: and operator.
+	 * 
+	 * @return the node for parsed expression.
+	 * @throws ParsingException
+	 */
+	private Node conjunction() throws ParsingException {
+		return this.andRest(this.comparison());
+	}
+	
+	/**
+	 * Parses the and operators following an operand.
+	 * 
+	 * @param node
+	 *            the left operand.
+	 * @return the node for parsed expression.
+	 * @throws ParsingException
+	 */
+	private Node andRest(Node node) throws ParsingException {
+		Token tk = this.peek();
+		while (tk != null && tk.getType() == TypeEnum.AND) {
+			this.advance();
+			node = this.factory.logical(TypeEnum.AND, node, this.comparison());
+			tk = this.peek();
+		}
+		
+		return node;
+	}
+	
+	/**
+	 * Comparison: comparison signs.
+	 * 
+	 * @return the node for parsed expression.
+	 * @throws ParsingException
+	 */
+	private Node comparison() throws ParsingException {
+		return this.comparisonRest(this.sum());
+	}
+	
+	/**
+	 * Parses the comparison signs following an operand.
+	 * 
+	 * @param node
+	 *            the left operand.
+	 * @return the node for parsed expression.
+	 * @throws ParsingException
+	 */
+	private Node comparisonRest(Node node) throws ParsingException {
+		Token tk = this.peek();
+		while (tk != null
+				&& (tk.getType() == TypeEnum.LESS || tk.getType() == TypeEnum.LESS_EQUAL
+						|| tk.getType() == TypeEnum.GREATER || tk.getType() == TypeEnum.GREATER_EQUAL
+						|| tk.getType() == TypeEnum.EQUAL || tk.getType() == TypeEnum.NOT_EQUAL)) {
+			this.advance();
+			node = this.factory.binary(tk.getType(), node, this.sum());
+			tk = this.peek();
+		}
+		
+		return node;
+	}
+	
+	/**
+	 * Sum: sum and minus signs.
+	 * 
+	 * @return the node for parsed expression.
+	 * @throws ParsingException
+	 */
+	private Node sum() throws ParsingException {
+		return this.sumRest(this.interm1());
+	}
+	
+	/**
+	 * Parses the sum and minus signs following an operand.
+	 * 
+	 * @param node
+	 *            the left operand.
+	 * @return the node for parsed expression.
+	 * @throws ParsingException
+	 */
+	private Node sumRest(Node node) throws ParsingException {
+		Token tk = this.peek();
+		while (tk != null && (tk.getType() == TypeEnum.PLUS || tk.getType() == TypeEnum.MINUS)) {
+			this.advance();
+			node = this.factory.binary(tk.getType(), node, this.interm1());
+			tk = this.peek();
+		}
+		
+		return node;
+	}
+	
+	/**
+	 * Intermediate parsing, level 1: multiply, divide and modulus signs.
+	 * 
+	 * @return the node for parsed expression.
+	 * @throws ParsingException
+	 */
+	private Node interm1() throws ParsingException {
+		return this.interm1Rest(this.interm2());
+	}
+	
+	/**
+	 * Parses the multiply, divide and modulus signs following an operand.
+	 * 
+	 * @param node
+	 *            the left operand.
+	 * @return the node for parsed expression.
+	 * @throws ParsingException
+	 */
+	private Node interm1Rest(Node node) throws ParsingException {
+		Token tk = this.peek();
+		while (tk != null
+				&& (tk.getType() == TypeEnum.MULT || tk.getType() == TypeEnum.DIV || tk.getType() == TypeEnum.MOD)) {
+			this.advance();
+			node = this.factory.binary(tk.getType(), node, this.interm2());
+			tk = this.peek();
+		}
+		
+		return node;
+	}
+	
+	/**
+	 * Intermediate parsing, level 2: power sign, which is right associative.
+	 * 
+	 * @return the node for parsed expression.
+	 * @throws ParsingException
+	 */
+	private Node interm2() throws ParsingException {
+		return this.interm2Rest(this.term());
+	}
+	
+	/**
+	 * Parses the power sign following an operand.
+	 * 
+	 * @param node
+	 *            the left operand.
+	 * @return the node for parsed expression.
+	 * @throws ParsingException
+	 */
+	private Node interm2Rest(Node node) throws ParsingException {
+		Token tk = this.peek();
+		if (tk != null && tk.getType() == TypeEnum.POWER) {
+			this.advance();
+			node = this.factory.binary(TypeEnum.POWER, node, this.interm2());
+		}
+		
+		return node;
+	}
+	
+	/**
+	 * Parses the terminal token and subexpressions. On error, no token is
+	 * consumed, so that the caller may go on with the next operator.
+	 * 
+	 * @return the terminal node.
+	 * @throws ParsingException
+	 *             when an unexpected token is found.
+	 */
+	private Node term() throws ParsingException {
+		Token tk = this.peek();
+		
+		boolean positive = true;
+		if (tk != null && tk.getType() == TypeEnum.PLUS) {
+			this.advance();
+			tk = this.peek();
+		} else if (tk != null && tk.getType() == TypeEnum.MINUS) {
+			this.advance();
+			positive = false;
+			tk = this.peek();
+		}
+		
+		if (tk == null) {
+			this.error(null, "unexpected end of expression", TERM_START);
+		} else if (tk.getType() == TypeEnum.NUMBER) {
+			this.advance();
+			
+			// Checks the syntax first, since building exceptions is expensive
+			BigDecimal value = BigDecimal.ZERO;
+			if (Utils.isNumber(tk.getText())) {
+				value = new BigDecimal(tk.getText());
+			} else {
+				this.error(tk, "malformed number " + tk.getText(), EnumSet.noneOf(TypeEnum.class));
+			}
+			
+			if (!positive) {
+				value = value.negate();
+			}
+			
+			return this.factory.number(value);
+		} else if (tk.getType() == TypeEnum.IDENTIFIER) {
+			this.advance();
+			return this.factory.identifier(tk.getText(), !positive);
+		} else if (tk.getType() == TypeEnum.OPEN_BRACK) {
+			this.advance();
+			
+			// As in Parser.term, a sign before a subexpression is not applied
+			Node node = this.recover(this.exp(), BRACKET_END);
+			this.expect(TypeEnum.CLOSE_BRACK);
+			
+			return node;
+		} else if (tk.getType() == TypeEnum.IF) {
+			this.advance();
+			
+			// As a subexpression in brackets, a sign before it is not applied.
+			// Missing arguments are left as zero while diagnostics are collected
+			Node condition = this.factory.number(BigDecimal.ZERO);
+			Node value1 = condition;
+			Node value2 = condition;
+			if (this.expect(TypeEnum.OPEN_BRACK)) {
+				condition = this.recover(this.exp(), ARGUMENT_END);
+				if (this.expect(TypeEnum.COMMA)) {
+					value1 = this.recover(this.exp(), ARGUMENT_END);
+					if (this.expect(TypeEnum.COMMA)) {
+						value2 = this.recover(this.exp(), ARGUMENT_END);
+						this.expect(TypeEnum.CLOSE_BRACK);
+					}
+				}
+			}
+			
+			return this.factory.conditional(condition, value1, value2);
+		} else {
+			this.error(tk, "unexpected token", TERM_START);
+		}
+		
+		// Stands for the missing term while diagnostics are collected
+		return this.factory.number(BigDecimal.ZERO);
+	}
+}
@@ -0,0 +1,89 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import parser.Parser;
+import parser.RulebookCompiler;
+import util.ValueMap;
+
+public class TestConditional {
+	private static ForkJoinPool pool = new ForkJoinPool(2);
+	
+	@AfterClass
+	public static void shutdown() {
+		pool.shutdown();
+	}
+	
+	private ValueMap values() {
+		ValueMap values = new ValueMap();
+		values.put("val1", new BigDecimal(5));
+		values.put("val2", new BigDecimal(10));
+		values.put("zero", BigDecimal.ZERO);
+		return values;
+	}
+	
+	private BigDecimal eval(String expression) throws Exception {
+		Parser p = new Parser(expression);
+		BigDecimal sequential = p.eval(p.lexicalVerifier(), this.values());
+		
+		p = new Parser(expression);
+		p.setParallelEvaluation(pool, 1);
+		assertEquals(sequential, p.eval(p.lexicalVerifier(), this.values()));
+		
+		RulebookCompiler compiler = new RulebookCompiler();
+		compiler.add("result", expression);
+		assertEquals(sequential, compiler.compile().evaluate(this.values()).get("result"));
+		
+		return sequential;
+	}
+	
+	@Test
+	public void testComparison() throws Exception {
+		assertEquals(this.eval("val1<val2").compareTo(BigDecimal.ONE), 0);
+		assertEquals(this.eval("val1>=val2").compareTo(BigDecimal.ZERO), 0);
+		assertEquals(this.eval("val1*2==val2").compareTo(BigDecimal.ONE), 0);
+		assertEquals(this.eval("val1!=5.00").compareTo(BigDecimal.ZERO), 0);
+		assertEquals(this.eval("val1+1<=val2-4").compareTo(BigDecimal.ONE), 0);
+	}
+	
+	@Test
+	public void testBoolean() throws Exception {
+		assertEquals(this.eval("val1<val2 and val2>val1").compareTo(BigDecimal.ONE), 0);
+		assertEquals(this.eval("val1>val2 or zero").compareTo(BigDecimal.ZERO), 0);
+		assertEquals(this.eval("zero and val1 or val2").compareTo(BigDecimal.ONE), 0);
+	}
+	
+	@Test
+	public void testConditional() throws Exception {
+		assertEquals(this.eval("if(val1<val2, val1, val2)*2").compareTo(new BigDecimal(10)), 0);
+		assertEquals(this.eval("val1-if(val1>val2, val1, val2)").compareTo(new BigDecimal(-5)), 0);
+		assertEquals(this.eval("if(zero, 1, if(val1, 2, 3))").compareTo(new BigDecimal(2)), 0);
+	}
+	
+	@Test
+	public void testSign() throws Exception {
+		// As before brackets, a sign before a conditional is not applied
+		assertEquals(this.eval("-(val1+val2)"), this.eval("val1+val2"));
+		assertEquals(this.eval("-if(val1, val1, val2)"), this.eval("if(val1, val1, val2)"));
+	}
+	
+	@Test
+	public void testLazy() throws Exception {
+		// Neither the division by zero nor the unknown variable are evaluated
+		assertEquals(this.eval("if(zero, val1/zero + unknown, val2)").compareTo(new BigDecimal(10)), 0);
+		assertEquals(this.eval("zero and val1/zero").compareTo(BigDecimal.ZERO), 0);
+		assertEquals(this.eval("val1 or unknown^2").compareTo(BigDecimal.ONE), 0);
+	}
+	
+	@Test(expected = ArithmeticException.class)
+	public void testSelectedBranch() throws Exception {
+		Parser p = new Parser("if(val1, val1/zero, val2)");
+		p.eval(p.lexicalVerifier(), this.values());
+	}
+}
@@ -0,0 +1,128 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import org.junit.Test;
+
+import parser.Diagnostic;
+import parser.Lexer;
+import parser.Parser;
+import parser.Token;
+import util.ValueMap;
+import enumeration.TypeEnum;
+import exception.LexicalException;
+
+public class TestLexer {
+	
+	@Test
+	public void testWhitespace() throws Exception {
+		Lexer lexer = new Lexer(" val1 +\t( val2>=3.5 )\n");
+		
+		TypeEnum[] types = { TypeEnum.IDENTIFIER, TypeEnum.PLUS, TypeEnum.OPEN_BRACK, TypeEnum.IDENTIFIER,
+				TypeEnum.GREATER_EQUAL, TypeEnum.NUMBER, TypeEnum.CLOSE_BRACK };
+		int[] indexes = { 1, 6, 8, 10, 14, 16, 20 };
+		for (int i = 0; i < types.length; i++) {
+			Token tk = lexer.next();
+			assertEquals(types[i], tk.getType());
+			assertEquals(indexes[i], tk.getInitIndex());
+		}
+		
+		assertNull(lexer.next());
+	}
+	
+	@Test
+	public void testSources() throws Exception {
+		ValueMap values = new ValueMap();
+		values.put("val1", new BigDecimal(2));
+		
+		// Longer than the lexer buffer, so it is read in several chunks
+		StringBuilder expression = new StringBuilder("0");
+		for (int i = 0; i < 2000; i++) {
+			expression.append(" + val1 * ").append(i);
+		}
+		BigDecimal expected = new BigDecimal(2 * 1999 * 2000 / 2);
+		
+		Parser p = new Parser(expression);
+		assertEquals(p.eval(p.lexicalVerifier(), values).compareTo(expected), 0);
+		
+		p = new Parser(new Lexer(new StringReader(expression.toString())));
+		assertEquals(p.eval(p.lexicalVerifier(), values).compareTo(expected), 0);
+		
+		// Parsed as the tokens are read
+		p = new Parser(new Lexer(new StringReader(expression.toString())));
+		assertEquals(p.eval(values).compareTo(expected), 0);
+		
+		ByteBuffer bytes = ByteBuffer.wrap(expression.toString().getBytes(Charset.forName("UTF-8")));
+		p = new Parser(new Lexer(bytes));
+		assertEquals(p.eval(p.lexicalVerifier(), values).compareTo(expected), 0);
+		assertEquals(0, bytes.position());
+	}
+	
+	@Test
+	public void testUtf8() throws Exception {
+		ByteBuffer bytes = ByteBuffer.wrap("a \u00e9 + b".getBytes(Charset.forName("UTF-8")));
+		List<Diagnostic> diagnostics = new Parser(new Lexer(bytes)).validate();
+		
+		assertEquals(1, diagnostics.size());
+		assertEquals(2, diagnostics.get(0).getInitIndex());
+		assertEquals("Unrecognized character: \u00e9", diagnostics.get(0).getMessage());
+	}
+	
+	@Test(expected = LexicalException.class)
+	public void testUnrecognized() throws Exception {
+		new Parser("val1 = val2").lexicalVerifier();
+	}
+	
+	@Test(expected = LexicalException.class)
+	public void testUnrecognizedStreaming() throws Exception {
+		new Parser(new Lexer(new StringReader("val1 + val2 #"))).eval(new ValueMap());
+	}
+	
+	@Test
+	public void testReadFailure() {
+		Reader reader = new Reader() {
+			private boolean read = false;
+			
+			@Override
+			public int read(char[] cbuf, int off, int len) throws IOException {
+				if (this.read) {
+					throw new IOException("disk gone");
+				}
+				
+				this.read = true;
+				cbuf[off] = 'a';
+				cbuf[off + 1] = '+';
+				return 2;
+			}
+			
+			@Override
+			public void close() {
+			}
+		};
+		
+		List<Diagnostic> diagnostics = new Parser(new Lexer(reader)).validate();
+		
+		assertEquals(1, diagnostics.size());
+		assertEquals(2, diagnostics.get(0).getInitIndex());
+		assertEquals("Could not read the expression: disk gone", diagnostics.get(0).getMessage());
+	}
+	
+	@Test
+	public void testStringConstructors() throws Exception {
+		// Kept for clients compiled against them
+		assertNotNull(Parser.class.getConstructor(String.class));
+		assertNotNull(Parser.class.getConstructor(String.class, int.class));
+		assertNotNull(Parser.class.getConstructor(String.class, int.class, RoundingMode.class));
+	}
+}
@@ -0,0 +1,191 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import parser.Parser;
+import util.ValueMap;
+
+public class TestParallelEvaluation {
+	private static ForkJoinPool pool = new ForkJoinPool(4);
+	
+	@AfterClass
+	public static void shutdown() {
+		pool.shutdown();
+	}
+	
+	/**
+	 * Gets the common pool of Java 8 and later, whose callers run the root
+	 * task themselves, without linking against it.
+	 */
+	private static List<ForkJoinPool> pools() throws Exception {
+		List<ForkJoinPool> pools = new LinkedList<ForkJoinPool>();
+		pools.add(pool);
+		try {
+			pools.add((ForkJoinPool) ForkJoinPool.class.getMethod("commonPool").invoke(null));
+		} catch (NoSuchMethodException e) {
+			// Java 7 has no common pool
+		}
+		
+		return pools;
+	}
+	
+	private BigDecimal sequential(String expression, ValueMap values, int roundingPrecision) throws Exception {
+		Parser p = new Parser(expression, roundingPrecision);
+		return p.eval(p.lexicalVerifier(), values);
+	}
+	
+	private BigDecimal parallel(ForkJoinPool pool, String expression, ValueMap values, int roundingPrecision,
+			long costThreshold) throws Exception {
+		Parser p = new Parser(expression, roundingPrecision);
+		p.setParallelEvaluation(pool, costThreshold);
+		return p.eval(p.lexicalVerifier(), values);
+	}
+	
+	@Test
+	public void testComplexExp() throws Exception {
+		ValueMap values = new ValueMap();
+		values.put("val1", new BigDecimal(5));
+		values.put("val2", new BigDecimal(7));
+		values.put("val3", new BigDecimal(8));
+		values.put("val4", new BigDecimal(20));
+		values.put("val5", new BigDecimal(20));
+		
+		String expression = "val1+val2-((val3*val4/val5)^2.0)+val1^2.0^3.0";
+		BigDecimal value = this.parallel(pool, expression, values, 10, 1);
+		
+		assertEquals(value.compareTo(new BigDecimal("390573")), 0);
+		assertEquals(this.sequential(expression, values, 10), value);
+	}
+	
+	@Test
+	public void testSameAsSequential() throws Exception {
+		ValueMap values = new ValueMap();
+		values.put("a", new BigDecimal("1.0001"));
+		values.put("b", new BigDecimal("3"));
+		values.put("c", new BigDecimal("-7.25"));
+		
+		StringBuilder expression = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			if (i > 0) {
+				expression.append(i % 3 == 0 ? "-" : "+");
+			}
+			expression.append("a^" + (i % 50 + 10) + "*b/(c-" + i + ")%b^2-c*-a");
+		}
+		
+		String exp = expression.toString();
+		BigDecimal expected = this.sequential(exp, values, 40);
+		
+		for (ForkJoinPool p : pools()) {
+			assertEquals(expected, this.parallel(p, exp, values, 40, 1));
+			assertEquals(expected, this.parallel(p, exp, values, 40, 100));
+			assertEquals(expected, this.parallel(p, exp, values, 40, Long.MAX_VALUE));
+		}
+	}
+	
+	@Test
+	public void testLongSum() throws Exception {
+		ValueMap values = new ValueMap();
+		values.put("a", new BigDecimal("1.0001"));
+		values.put("b", new BigDecimal("3"));
+		
+		StringBuilder expression = new StringBuilder("a^60*b");
+		for (int i = 1; i < 3000; i++) {
+			expression.append(i % 2 == 0 ? "+" : "-").append("a^60*b");
+		}
+		
+		String exp = expression.toString();
+		BigDecimal expected = this.sequential(exp, values, 60);
+		
+		for (ForkJoinPool p : pools()) {
+			assertEquals(expected, this.parallel(p, exp, values, 60, 1));
+			assertEquals(expected, this.parallel(p, exp, values, 60, 100));
+			assertEquals(expected, this.parallel(p, exp, values, 60, 5000));
+		}
+		
+		expression = new StringBuilder("a");
+		for (int i = 1; i < 3000; i++) {
+			expression.append("+a");
+		}
+		
+		exp = expression.toString();
+		assertEquals(this.sequential(exp, values, 10), this.parallel(pool, exp, values, 10, 1));
+	}
+	
+	@Test
+	public void testForked() throws Exception {
+		// The first lookup of each thread waits for a second thread to look up
+		// a value, which only happens when some terms are computed elsewhere
+		final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+		final CountDownLatch latch = new CountDownLatch(2);
+		ValueMap values = new ValueMap() {
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			public BigDecimal get(Object key) {
+				if (threads.add(Thread.currentThread())) {
+					latch.countDown();
+					try {
+						latch.await(10, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				
+				return super.get(key);
+			}
+		};
+		values.put("a", new BigDecimal("2"));
+		
+		StringBuilder expression = new StringBuilder("a");
+		for (int i = 1; i < 1000; i++) {
+			expression.append("+a");
+		}
+		
+		BigDecimal value = this.parallel(pool, expression.toString(), values, 10, 50);
+		
+		assertEquals(value.compareTo(new BigDecimal(2000)), 0);
+		assertTrue(threads.size() > 1);
+	}
+	
+	@Test
+	public void testSameException() throws Exception {
+		ValueMap values = new ValueMap();
+		values.put("v0", BigDecimal.ZERO);
+		values.put("v1", new BigDecimal(3));
+		values.put("v2", new BigDecimal(7));
+		
+		String exp = "v1*v2^3+v2%v0";
+		ArithmeticException expected = null;
+		try {
+			this.sequential(exp, values, 10);
+			fail("division by zero not thrown");
+		} catch (ArithmeticException e) {
+			expected = e;
+		}
+		
+		for (ForkJoinPool p : pools()) {
+			try {
+				this.parallel(p, exp, values, 10, 1);
+				fail("division by zero not thrown");
+			} catch (ArithmeticException e) {
+				assertEquals(expected.getClass(), e.getClass());
+				assertEquals(expected.getMessage(), e.getMessage());
+			}
+		}
+	}
+}
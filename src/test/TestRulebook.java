@@ -0,0 +1,100 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import parser.Parser;
+import parser.RulebookCompiler;
+import tree.Rulebook;
+import util.ValueMap;
+import exception.EvaluationException;
+
+public class TestRulebook {
+	
+	@Test
+	public void testSameAsParser() throws Exception {
+		ValueMap values = new ValueMap();
+		values.put("price", new BigDecimal("19.99"));
+		values.put("qty", new BigDecimal(3));
+		values.put("rate", new BigDecimal("0.015"));
+		
+		String[] expressions = { "price*qty", "price*qty*(1+rate)^12", "(1+rate)^12/qty", "price*qty-(1+rate)^12%2",
+				"price*qty/7" };
+		
+		RulebookCompiler compiler = new RulebookCompiler(20);
+		for (int i = 0; i < expressions.length; i++) {
+			compiler.add("r" + i, expressions[i]);
+		}
+		
+		Map<String, BigDecimal> results = compiler.compile().evaluate(values);
+		
+		assertEquals(expressions.length, results.size());
+		for (int i = 0; i < expressions.length; i++) {
+			Parser p = new Parser(expressions[i], 20);
+			assertEquals(p.eval(p.lexicalVerifier(), values), results.get("r" + i));
+		}
+	}
+	
+	@Test
+	public void testSharedSubexpressions() throws Exception {
+		RulebookCompiler compiler = new RulebookCompiler();
+		compiler.add("a", "(price*qty)+(1+rate)^n");
+		int nodes = compiler.getNodeCount();
+		
+		compiler.add("b", "(1+rate)^n-price*qty");
+		
+		// Only the root of the second expression is new
+		assertEquals(nodes + 1, compiler.getNodeCount());
+	}
+	
+	@Test
+	public void testReplacedFormula() throws Exception {
+		RulebookCompiler compiler = new RulebookCompiler();
+		compiler.add("a", "price*qty");
+		int nodes = compiler.getNodeCount();
+		
+		compiler.add("a", "(1+rate)^n");
+		compiler.add("a", "price*qty");
+		
+		assertEquals(nodes, compiler.getNodeCount());
+	}
+	
+	@Test
+	public void testFailedFormula() throws Exception {
+		ValueMap values = new ValueMap();
+		values.put("a", new BigDecimal(6));
+		values.put("zero", BigDecimal.ZERO);
+		
+		RulebookCompiler compiler = new RulebookCompiler();
+		compiler.add("first", "a*2");
+		compiler.add("divided", "a/zero");
+		compiler.add("missing", "a+unknown");
+		compiler.add("last", "a-1");
+		Rulebook rulebook = compiler.compile();
+		
+		try {
+			rulebook.evaluate(values);
+			fail("division by zero not thrown");
+		} catch (EvaluationException e) {
+			assertEquals("divided", e.getFormula());
+			assertTrue(e.getCause() instanceof ArithmeticException);
+		}
+		
+		Map<String, EvaluationException> errors = new HashMap<String, EvaluationException>();
+		Map<String, BigDecimal> results = rulebook.evaluate(values, errors);
+		
+		assertEquals(2, errors.size());
+		assertEquals("divided", errors.get("divided").getFormula());
+		assertEquals("missing", errors.get("missing").getFormula());
+		assertEquals(2, results.size());
+		assertEquals(results.get("first").compareTo(new BigDecimal(12)), 0);
+		assertEquals(results.get("last").compareTo(new BigDecimal(5)), 0);
+	}
+}
@@ -0,0 +1,142 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import parser.Diagnostic;
+import parser.Parser;
+import parser.RulebookCompiler;
+import util.ValueMap;
+import enumeration.TypeEnum;
+import exception.ParsingException;
+
+public class TestValidation {
+	private static ForkJoinPool pool = new ForkJoinPool(2);
+	
+	@AfterClass
+	public static void shutdown() {
+		pool.shutdown();
+	}
+	
+	@Test
+	public void testValid() {
+		Parser p = new Parser("val1+val2-((val3*val4/val5)^2.0)+val1^2.0^3.0");
+		assertTrue(p.validate().isEmpty());
+	}
+	
+	@Test
+	public void testAllErrors() {
+		Parser p = new Parser("a+#b*)c+(d");
+		List<Diagnostic> diagnostics = p.validate();
+		
+		assertEquals(4, diagnostics.size());
+		assertEquals(2, diagnostics.get(0).getInitIndex());
+		assertEquals("Unrecognized character: #", diagnostics.get(0).getMessage());
+		assertEquals(5, diagnostics.get(1).getInitIndex());
+		assertTrue(diagnostics.get(1).getExpected().contains(TypeEnum.IDENTIFIER));
+		assertEquals(6, diagnostics.get(2).getInitIndex());
+		assertEquals(10, diagnostics.get(3).getInitIndex());
+		assertTrue(diagnostics.get(3).getExpected().contains(TypeEnum.CLOSE_BRACK));
+	}
+	
+	@Test
+	public void testMalformedNumber() {
+		Parser p = new Parser("1.2.3*a");
+		List<Diagnostic> diagnostics = p.validate();
+		
+		assertEquals(1, diagnostics.size());
+		assertEquals(0, diagnostics.get(0).getInitIndex());
+	}
+	
+	@Test
+	public void testConditional() {
+		assertTrue(new Parser("if(a < b and c != 0, a / c, -b) >= 1 or d").validate().isEmpty());
+		
+		List<Diagnostic> diagnostics = new Parser("if(a, b) + (c").validate();
+		assertEquals(2, diagnostics.size());
+		assertEquals(7, diagnostics.get(0).getInitIndex());
+		assertTrue(diagnostics.get(0).getExpected().contains(TypeEnum.COMMA));
+		assertEquals(13, diagnostics.get(1).getInitIndex());
+	}
+	
+	@Test(expected = ParsingException.class)
+	public void testEndOfExpression() throws Exception {
+		Parser p = new Parser("(val1+");
+		p.eval(p.lexicalVerifier(), new ValueMap());
+	}
+	
+	@Test
+	public void testTrailingTokens() throws Exception {
+		ValueMap values = new ValueMap();
+		values.put("a", new BigDecimal(5));
+		values.put("b", new BigDecimal(7));
+		
+		String[] expressions = { "a b", "a,b", "a+b)", "price qty", "1.2.3*a" };
+		for (String expression : expressions) {
+			assertFalse(new Parser(expression).validate().isEmpty());
+			
+			try {
+				Parser p = new Parser(expression);
+				p.eval(p.lexicalVerifier(), values);
+				fail(expression + " evaluated sequentially");
+			} catch (ParsingException e) {
+				// Rejected as by validate
+			}
+			
+			try {
+				Parser p = new Parser(expression);
+				p.setParallelEvaluation(pool, 1);
+				p.eval(p.lexicalVerifier(), values);
+				fail(expression + " evaluated in parallel");
+			} catch (ParsingException e) {
+				// Rejected as sequentially
+			}
+			
+			try {
+				new RulebookCompiler().add("result", expression);
+				fail(expression + " compiled");
+			} catch (ParsingException e) {
+				// Rejected as sequentially
+			}
+		}
+	}
+	
+	@Test
+	public void testEndPosition() throws Exception {
+		ValueMap values = new ValueMap();
+		values.put("a", new BigDecimal(5));
+		
+		String[] expressions = { "a+", "(a", "a*-", "if(a,a" };
+		for (String expression : expressions) {
+			String expected = "unexpected end of expression at " + expression.length();
+			
+			try {
+				Parser p = new Parser(expression);
+				p.eval(p.lexicalVerifier(), values);
+				fail(expression + " evaluated sequentially");
+			} catch (ParsingException e) {
+				assertEquals(expected, e.getMessage());
+			}
+			
+			try {
+				Parser p = new Parser(expression);
+				p.setParallelEvaluation(pool, 1);
+				p.eval(p.lexicalVerifier(), values);
+				fail(expression + " evaluated in parallel");
+			} catch (ParsingException e) {
+				assertEquals(expected, e.getMessage());
+			}
+			
+			assertEquals(expected, new Parser(expression).validate().get(0).toString());
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package tree;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.List;
+
+import util.Utils;
+import enumeration.TypeEnum;
+
+/**
+ * An arithmetic operation between two subexpressions.
+ * 
+ * @author mauren
+ */
+public class BinaryNode extends Node {
+	/**
+	 * Exponent assumed when estimating the cost of a power whose exponent is
+	 * not a literal.
+	 */
+	private static final long UNKNOWN_EXPONENT = 16;
+	
+	private final TypeEnum operator;
+	private final Node left;
+	private final Node right;
+	private final int hash;
+	
+	/**
+	 * Constructs a new operation node.
+	 * 
+	 * @param operator
+	 *            one of PLUS, MINUS, MULT, DIV, MOD, POWER or a comparison
+	 *            sign.
+	 * @param left
+	 *            left operand.
+	 * @param right
+	 *            right operand.
+	 */
+	public BinaryNode(TypeEnum operator, Node left, Node right) {
+		super(addCost(addCost(left.getCost(), right.getCost()), operatorCost(operator, right)));
+		this.operator = operator;
+		this.left = left;
+		this.right = right;
+		this.hash = 31 * (31 * operator.ordinal() + left.hashCode()) + right.hashCode();
+	}
+	
+	/**
+	 * Estimates the cost of the operation itself, not counting its operands.
+	 * Divisions and remainders are weighted above sums and products, and
+	 * powers are weighted by their exponent, since the size of the result
+	 * grows linearly with it.
+	 * 
+	 * @param operator
+	 *            the operator.
+	 * @param right
+	 *            the right operand.
+	 * @return estimated cost of the operation.
+	 */
+	private static long operatorCost(TypeEnum operator, Node right) {
+		switch (operator) {
+		case PLUS:
+		case MINUS:
+		case LESS:
+		case LESS_EQUAL:
+		case GREATER:
+		case GREATER_EQUAL:
+		case EQUAL:
+		case NOT_EQUAL:
+			return 1;
+		case MULT:
+			return 2;
+		case DIV:
+		case MOD:
+			return 4;
+		case POWER:
+			long exponent = UNKNOWN_EXPONENT;
+			if (right instanceof NumberNode) {
+				exponent = Math.abs((long) ((NumberNode) right).getValue().intValue());
+			}
+			
+			return 4 * Math.max(1, exponent);
+		default:
+			throw new IllegalArgumentException("not a binary operator: " + operator);
+		}
+	}
+	
+	public TypeEnum getOperator() {
+		return operator;
+	}
+	
+	public Node getLeft() {
+		return left;
+	}
+	
+	public Node getRight() {
+		return right;
+	}
+	
+	@Override
+	public List<Node> getChildren() {
+		return Arrays.asList(left, right);
+	}
+	
+	@Override
+	public BigDecimal evaluate(Evaluator evaluator) {
+		BigDecimal op1 = evaluator.evaluate(left);
+		BigDecimal op2 = evaluator.evaluate(right);
+		
+		return this.apply(op1, op2, evaluator);
+	}
+	
+	/**
+	 * Applies this operation to already evaluated operands, exactly as
+	 * {@link parser.Parser} does while parsing.
+	 * 
+	 * @param op1
+	 *            left operand value.
+	 * @param op2
+	 *            right operand value.
+	 * @param evaluator
+	 *            evaluator holding the rounding settings.
+	 * @return value of the operation.
+	 */
+	public BigDecimal apply(BigDecimal op1, BigDecimal op2, Evaluator evaluator) {
+		switch (operator) {
+		case PLUS:
+			return op1.add(op2);
+		case MINUS:
+			return op1.subtract(op2);
+		case MULT:
+			return op1.multiply(op2);
+		case DIV:
+			return op1.divide(op2, evaluator.getRoundingPrecision(), evaluator.getRoundingMode());
+		case MOD:
+			return op1.remainder(op2, new MathContext(evaluator.getRoundingPrecision(), evaluator.getRoundingMode()));
+		case POWER:
+			return op1.pow(op2.intValue());
+		case LESS:
+		case LESS_EQUAL:
+		case GREATER:
+		case GREATER_EQUAL:
+		case EQUAL:
+		case NOT_EQUAL:
+			return Utils.toDecimal(Utils.compare(operator, op1, op2));
+		default:
+			throw new IllegalStateException("not a binary operator: " + operator);
+		}
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		
+		if (!(obj instanceof BinaryNode)) {
+			return false;
+		}
+		
+		BinaryNode other = (BinaryNode) obj;
+		return hash == other.hash && operator == other.operator && left.equals(other.left)
+				&& right.equals(other.right);
+	}
+	
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+	
+	@Override
+	public String toString() {
+		return "(" + left + " " + operator + " " + right + ")";
+	}
+}
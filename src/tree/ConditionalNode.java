@@ -0,0 +1,88 @@
+package tree;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+import util.Utils;
+
+/**
+ * A conditional, which evaluates only the value selected by its condition.
+ * 
+ * @author mauren
+ */
+public class ConditionalNode extends Node {
+	private final Node condition;
+	private final Node value1;
+	private final Node value2;
+	private final int hash;
+	
+	/**
+	 * Constructs a new conditional node.
+	 * 
+	 * @param condition
+	 *            the condition.
+	 * @param value1
+	 *            value when the condition is true.
+	 * @param value2
+	 *            value when the condition is false.
+	 */
+	public ConditionalNode(Node condition, Node value1, Node value2) {
+		super(addCost(addCost(condition.getCost(), Math.max(value1.getCost(), value2.getCost())), 1));
+		this.condition = condition;
+		this.value1 = value1;
+		this.value2 = value2;
+		this.hash = 31 * (31 * condition.hashCode() + value1.hashCode()) + value2.hashCode();
+	}
+	
+	public Node getCondition() {
+		return condition;
+	}
+	
+	public Node getValue1() {
+		return value1;
+	}
+	
+	public Node getValue2() {
+		return value2;
+	}
+	
+	@Override
+	public List<Node> getChildren() {
+		return Arrays.asList(condition, value1, value2);
+	}
+	
+	@Override
+	public BigDecimal evaluate(Evaluator evaluator) {
+		if (Utils.isTrue(evaluator.evaluate(condition))) {
+			return evaluator.evaluate(value1);
+		}
+		
+		return evaluator.evaluate(value2);
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		
+		if (!(obj instanceof ConditionalNode)) {
+			return false;
+		}
+		
+		ConditionalNode other = (ConditionalNode) obj;
+		return hash == other.hash && condition.equals(other.condition)
+				&& value1.equals(other.value1) && value2.equals(other.value2);
+	}
+	
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+	
+	@Override
+	public String toString() {
+		return "if(" + condition + ", " + value1 + ", " + value2 + ")";
+	}
+}
@@ -0,0 +1,56 @@
+package tree;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import util.ValueMap;
+
+/**
+ * Evaluates expression trees sequentially, depth first and left to right.
+ * 
+ * @author mauren
+ */
+public class Evaluator {
+	private ValueMap values;
+	private int roundingPrecision;
+	private RoundingMode roundingMode;
+	
+	/**
+	 * Constructs a new evaluator.
+	 * 
+	 * @param values
+	 *            values to translate identifiers.
+	 * @param roundingPrecision
+	 *            scale used by divisions.
+	 * @param roundingMode
+	 *            rounding mode used by divisions and remainders.
+	 */
+	public Evaluator(ValueMap values, int roundingPrecision, RoundingMode roundingMode) {
+		this.values = values;
+		this.roundingPrecision = roundingPrecision;
+		this.roundingMode = roundingMode;
+	}
+	
+	/**
+	 * Evaluates a node.
+	 * 
+	 * @param node
+	 *            the node to be evaluated.
+	 * @return value of the node.
+	 */
+	public BigDecimal evaluate(Node node) {
+		return node.evaluate(this);
+	}
+	
+	public ValueMap getValues() {
+		return values;
+	}
+	
+	public int getRoundingPrecision() {
+		return roundingPrecision;
+	}
+	
+	public RoundingMode getRoundingMode() {
+		return roundingMode;
+	}
+}
@@ -0,0 +1,70 @@
+package tree;
+
+import java.math.BigDecimal;
+
+/**
+ * A reference to a variable, optionally negated by an unary minus sign.
+ * 
+ * @author mauren
+ */
+public class IdentifierNode extends Node {
+	private final String name;
+	private final boolean negated;
+	
+	/**
+	 * Constructs a new identifier node.
+	 * 
+	 * @param name
+	 *            the variable name.
+	 * @param negated
+	 *            whether the variable value must be negated.
+	 */
+	public IdentifierNode(String name, boolean negated) {
+		super(1);
+		this.name = name;
+		this.negated = negated;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public boolean isNegated() {
+		return negated;
+	}
+	
+	@Override
+	public BigDecimal evaluate(Evaluator evaluator) {
+		BigDecimal value = evaluator.getValues().get(name);
+		
+		if (negated) {
+			value = value.negate();
+		}
+		
+		return value;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		
+		if (!(obj instanceof IdentifierNode)) {
+			return false;
+		}
+		
+		IdentifierNode other = (IdentifierNode) obj;
+		return negated == other.negated && name.equals(other.name);
+	}
+	
+	@Override
+	public int hashCode() {
+		return 31 * name.hashCode() + (negated ? 1 : 0);
+	}
+	
+	@Override
+	public String toString() {
+		return negated ? "-" + name : name;
+	}
+}
@@ -0,0 +1,61 @@
+package tree;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import enumeration.TypeEnum;
+
+/**
+ * Node factory which hash-conses its nodes: structurally identical
+ * subexpressions are always represented by the same node instance, so every
+ * tree created through the same factory is part of a single DAG.
+ * 
+ * @author mauren
+ */
+public class InterningNodeFactory extends NodeFactory {
+	private Map<Node, Node> nodes = new HashMap<Node, Node>();
+	
+	/**
+	 * Gets the canonical instance for a node, registering it when it is the
+	 * first one of its kind.
+	 * 
+	 * @param node
+	 *            a newly created node.
+	 * @return the canonical node.
+	 */
+	private Node intern(Node node) {
+		Node canonical = nodes.get(node);
+		if (canonical == null) {
+			nodes.put(node, node);
+			canonical = node;
+		}
+		
+		return canonical;
+	}
+	
+	@Override
+	public Node number(BigDecimal value) {
+		return this.intern(super.number(value));
+	}
+	
+	@Override
+	public Node identifier(String name, boolean negated) {
+		return this.intern(super.identifier(name, negated));
+	}
+	
+	@Override
+	public Node binary(TypeEnum operator, Node left, Node right) {
+		return this.intern(super.binary(operator, left, right));
+	}
+	
+	@Override
+	public Node logical(TypeEnum operator, Node left, Node right) {
+		return this.intern(super.logical(operator, left, right));
+	}
+	
+	@Override
+	public Node conditional(Node condition, Node value1, Node value2) {
+		return this.intern(super.conditional(condition, value1, value2));
+	}
+}
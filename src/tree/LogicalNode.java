@@ -0,0 +1,98 @@
+package tree;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+import util.Utils;
+import enumeration.TypeEnum;
+
+/**
+ * A boolean operation between two subexpressions, which evaluates the right
+ * one only when the left one does not already decide the result. Evaluates to
+ * one when true and to zero when false.
+ * 
+ * @author mauren
+ */
+public class LogicalNode extends Node {
+	private final TypeEnum operator;
+	private final Node left;
+	private final Node right;
+	private final int hash;
+	
+	/**
+	 * Constructs a new boolean operation node.
+	 * 
+	 * @param operator
+	 *            AND or OR.
+	 * @param left
+	 *            left operand.
+	 * @param right
+	 *            right operand, only evaluated when needed.
+	 */
+	public LogicalNode(TypeEnum operator, Node left, Node right) {
+		super(addCost(addCost(left.getCost(), right.getCost()), 1));
+		if (operator != TypeEnum.AND && operator != TypeEnum.OR) {
+			throw new IllegalArgumentException("not a boolean operator: " + operator);
+		}
+		
+		this.operator = operator;
+		this.left = left;
+		this.right = right;
+		this.hash = 31 * (31 * operator.ordinal() + left.hashCode()) + right.hashCode();
+	}
+	
+	public TypeEnum getOperator() {
+		return operator;
+	}
+	
+	public Node getLeft() {
+		return left;
+	}
+	
+	public Node getRight() {
+		return right;
+	}
+	
+	@Override
+	public List<Node> getChildren() {
+		return Arrays.asList(left, right);
+	}
+	
+	@Override
+	public BigDecimal evaluate(Evaluator evaluator) {
+		boolean op1 = Utils.isTrue(evaluator.evaluate(left));
+		
+		// Short-circuits when the left operand decides the result
+		if (operator == TypeEnum.AND ? !op1 : op1) {
+			return Utils.toDecimal(op1);
+		}
+		
+		return Utils.toDecimal(Utils.isTrue(evaluator.evaluate(right)));
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		
+		if (!(obj instanceof LogicalNode)) {
+			return false;
+		}
+		
+		LogicalNode other = (LogicalNode) obj;
+		return hash == other.hash && operator == other.operator && left.equals(other.left)
+				&& right.equals(other.right);
+	}
+	
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+	
+	@Override
+	public String toString() {
+		return "(" + left + " " + operator + " " + right + ")";
+	}
+}
@@ -0,0 +1,47 @@
+package tree;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import util.ValueMap;
+
+/**
+ * Evaluates expression DAGs, computing each shared node only once.
+ * 
+ * @author mauren
+ */
+public class MemoizingEvaluator extends Evaluator {
+	private Map<Node, BigDecimal> results = new IdentityHashMap<Node, BigDecimal>();
+	
+	/**
+	 * Constructs a new memoizing evaluator.
+	 * 
+	 * @param values
+	 *            values to translate identifiers.
+	 * @param roundingPrecision
+	 *            scale used by divisions.
+	 * @param roundingMode
+	 *            rounding mode used by divisions and remainders.
+	 */
+	public MemoizingEvaluator(ValueMap values, int roundingPrecision, RoundingMode roundingMode) {
+		super(values, roundingPrecision, roundingMode);
+	}
+	
+	@Override
+	public BigDecimal evaluate(Node node) {
+		// Literals are cheaper to return than to look up
+		if (node instanceof NumberNode) {
+			return node.evaluate(this);
+		}
+		
+		BigDecimal value = results.get(node);
+		if (value == null) {
+			value = node.evaluate(this);
+			results.put(node, value);
+		}
+		
+		return value;
+	}
+}
@@ -0,0 +1,72 @@
+package tree;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A node of an expression tree built by {@link parser.TreeBuilder}.
+ * 
+ * @author mauren
+ */
+public abstract class Node {
+	private final long cost;
+	
+	/**
+	 * Constructs a new node with the given estimated evaluation cost.
+	 * 
+	 * @param cost
+	 *            estimated cost of evaluating this node and all of its
+	 *            children.
+	 */
+	protected Node(long cost) {
+		this.cost = cost;
+	}
+	
+	/**
+	 * Evaluates this node. Child nodes must be evaluated through the given
+	 * evaluator, so that it may decide how and where they are computed.
+	 * 
+	 * @param evaluator
+	 *            evaluator holding the values and rounding settings.
+	 * @return value of this node.
+	 */
+	public abstract BigDecimal evaluate(Evaluator evaluator);
+	
+	/**
+	 * Gets the estimated evaluation cost of this node, including all of its
+	 * children.
+	 * 
+	 * @return the estimated cost.
+	 */
+	public long getCost() {
+		return cost;
+	}
+	
+	/**
+	 * Gets the direct subexpressions of this node.
+	 * 
+	 * @return the child nodes, in evaluation order.
+	 */
+	public List<Node> getChildren() {
+		return Collections.emptyList();
+	}
+	
+	/**
+	 * Sums two costs, saturating at {@link Long#MAX_VALUE}.
+	 * 
+	 * @param a
+	 *            first cost.
+	 * @param b
+	 *            second cost.
+	 * @return the sum of both costs.
+	 */
+	protected static long addCost(long a, long b) {
+		long sum = a + b;
+		if (sum < 0) {
+			return Long.MAX_VALUE;
+		}
+		
+		return sum;
+	}
+}
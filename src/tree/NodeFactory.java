@@ -0,0 +1,83 @@
+package tree;
+
+import java.math.BigDecimal;
+
+import enumeration.TypeEnum;
+
+/**
+ * Creates the nodes of expression trees.
+ * 
+ * @author mauren
+ */
+public class NodeFactory {
+	
+	/**
+	 * Creates a numeric literal node.
+	 * 
+	 * @param value
+	 *            the literal value.
+	 * @return the node.
+	 */
+	public Node number(BigDecimal value) {
+		return new NumberNode(value);
+	}
+	
+	/**
+	 * Creates a variable reference node.
+	 * 
+	 * @param name
+	 *            the variable name.
+	 * @param negated
+	 *            whether the variable value must be negated.
+	 * @return the node.
+	 */
+	public Node identifier(String name, boolean negated) {
+		return new IdentifierNode(name, negated);
+	}
+	
+	/**
+	 * Creates an operation node.
+	 * 
+	 * @param operator
+	 *            one of PLUS, MINUS, MULT, DIV, MOD, POWER or a comparison
+	 *            sign.
+	 * @param left
+	 *            left operand.
+	 * @param right
+	 *            right operand.
+	 * @return the node.
+	 */
+	public Node binary(TypeEnum operator, Node left, Node right) {
+		return new BinaryNode(operator, left, right);
+	}
+	
+	/**
+	 * Creates a short-circuit boolean operation node.
+	 * 
+	 * @param operator
+	 *            AND or OR.
+	 * @param left
+	 *            left operand.
+	 * @param right
+	 *            right operand, only evaluated when needed.
+	 * @return the node.
+	 */
+	public Node logical(TypeEnum operator, Node left, Node right) {
+		return new LogicalNode(operator, left, right);
+	}
+	
+	/**
+	 * Creates a conditional node.
+	 * 
+	 * @param condition
+	 *            the condition.
+	 * @param value1
+	 *            value when the condition is true.
+	 * @param value2
+	 *            value when the condition is false.
+	 * @return the node.
+	 */
+	public Node conditional(Node condition, Node value1, Node value2) {
+		return new ConditionalNode(condition, value1, value2);
+	}
+}
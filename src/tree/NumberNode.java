@@ -0,0 +1,56 @@
+package tree;
+
+import java.math.BigDecimal;
+
+/**
+ * A numeric literal.
+ * 
+ * @author mauren
+ */
+public class NumberNode extends Node {
+	private final BigDecimal value;
+	
+	/**
+	 * Constructs a new literal node.
+	 * 
+	 * @param value
+	 *            the literal value.
+	 */
+	public NumberNode(BigDecimal value) {
+		super(1);
+		this.value = value;
+	}
+	
+	public BigDecimal getValue() {
+		return value;
+	}
+	
+	@Override
+	public BigDecimal evaluate(Evaluator evaluator) {
+		return value;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		
+		if (!(obj instanceof NumberNode)) {
+			return false;
+		}
+		
+		// Scale matters, as it changes the results of further operations
+		return value.equals(((NumberNode) obj).value);
+	}
+	
+	@Override
+	public int hashCode() {
+		return value.hashCode();
+	}
+	
+	@Override
+	public String toString() {
+		return value.toString();
+	}
+}
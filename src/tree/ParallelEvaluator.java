@@ -0,0 +1,281 @@
+package tree;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import util.ValueMap;
+import enumeration.TypeEnum;
+
+/**
+ * Evaluates expression trees on a {@link ForkJoinPool}. The terms of a chain
+ * of sums and subtractions are split into groups with an estimated cost of at
+ * least the configured threshold, which are computed in parallel. For other
+ * operations, whenever both operands reach the threshold, the right one is
+ * forked and both are computed in parallel. Cheaper subtrees are evaluated
+ * sequentially.
+ * 
+ * Every operation is still applied to the same operands with the same rounding
+ * settings, so the result is the same one a sequential evaluation gives.
+ * 
+ * @author mauren
+ */
+public class ParallelEvaluator extends Evaluator {
+	private ForkJoinPool pool;
+	private long costThreshold;
+	private Worker worker = new Worker();
+	
+	/**
+	 * Constructs a new parallel evaluator.
+	 * 
+	 * @param values
+	 *            values to translate identifiers.
+	 * @param roundingPrecision
+	 *            scale used by divisions.
+	 * @param roundingMode
+	 *            rounding mode used by divisions and remainders.
+	 * @param pool
+	 *            pool where subtrees are evaluated.
+	 * @param costThreshold
+	 *            minimum estimated cost for a subtree to be evaluated in
+	 *            parallel.
+	 */
+	public ParallelEvaluator(ValueMap values, int roundingPrecision, RoundingMode roundingMode, ForkJoinPool pool,
+			long costThreshold) {
+		super(values, roundingPrecision, roundingMode);
+		this.pool = pool;
+		this.costThreshold = costThreshold;
+	}
+	
+	/**
+	 * Evaluates a tree, entering the pool once for the whole evaluation. An
+	 * exception thrown by any subtree reaches the caller as the very same
+	 * exception a sequential evaluation would throw, rather than the copy
+	 * made by the pool.
+	 */
+	@Override
+	public BigDecimal evaluate(Node root) {
+		try {
+			return this.pool.invoke(new EvaluationTask(root));
+		} catch (RuntimeException e) {
+			throw unwrap(e);
+		} catch (Error e) {
+			throw unwrap(e);
+		}
+	}
+	
+	/**
+	 * Gets the original exception from the copies made by the pool when
+	 * rethrowing an exception thrown in another thread, which keep it as their
+	 * cause.
+	 * 
+	 * @param e
+	 *            the exception rethrown by the pool.
+	 * @return the original exception.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T extends Throwable> T unwrap(T e) {
+		Throwable cause = e.getCause();
+		while (cause != null && cause.getClass() == e.getClass()) {
+			e = (T) cause;
+			cause = e.getCause();
+		}
+		
+		return e;
+	}
+	
+	/**
+	 * Evaluates the subtrees inside the pool. Nodes evaluate their children
+	 * through it, so the pool is never entered again.
+	 */
+	private class Worker extends Evaluator {
+		
+		public Worker() {
+			super(ParallelEvaluator.this.getValues(), ParallelEvaluator.this.getRoundingPrecision(),
+					ParallelEvaluator.this.getRoundingMode());
+		}
+		
+		@Override
+		public BigDecimal evaluate(Node node) {
+			if (node instanceof BinaryNode && node.getCost() >= costThreshold) {
+				BinaryNode operation = (BinaryNode) node;
+				if (isSum(operation)) {
+					return this.sum(operation);
+				}
+				
+				Node left = operation.getLeft();
+				Node right = operation.getRight();
+				
+				if (left.getCost() >= costThreshold && right.getCost() >= costThreshold) {
+					// The right operand is forked, so that joining it never
+					// runs a whole left spine of operations on this stack
+					EvaluationTask rightTask = fork(new EvaluationTask(right));
+					BigDecimal op1 = this.evaluate(left);
+					BigDecimal op2 = rightTask.join();
+					
+					return operation.apply(op1, op2, this);
+				}
+			}
+			
+			return node.evaluate(this);
+		}
+		
+		/**
+		 * Evaluates a chain of sums and subtractions. The chain is walked
+		 * without recursion and its terms are split into groups of at least
+		 * the cost threshold, which are computed in parallel and then added
+		 * left to right. Sums and subtractions are exact, so the result is the
+		 * same one of the sequential evaluation.
+		 * 
+		 * @param sum
+		 *            the last operation of the chain.
+		 * @return value of the chain.
+		 */
+		private BigDecimal sum(BinaryNode sum) {
+			LinkedList<Node> terms = new LinkedList<Node>();
+			LinkedList<Boolean> subtracted = new LinkedList<Boolean>();
+			
+			Node node = sum;
+			while (node instanceof BinaryNode && isSum((BinaryNode) node)) {
+				BinaryNode operation = (BinaryNode) node;
+				terms.addFirst(operation.getRight());
+				subtracted.addFirst(operation.getOperator() == TypeEnum.MINUS);
+				node = operation.getLeft();
+			}
+			terms.addFirst(node);
+			subtracted.addFirst(false);
+			
+			List<SumTask> groups = new ArrayList<SumTask>();
+			List<Node> group = new ArrayList<Node>();
+			List<Boolean> groupSubtracted = new ArrayList<Boolean>();
+			long cost = 0;
+			while (!terms.isEmpty()) {
+				Node term = terms.removeFirst();
+				group.add(term);
+				groupSubtracted.add(subtracted.removeFirst());
+				cost = Node.addCost(cost, term.getCost());
+				
+				if (cost >= costThreshold || terms.isEmpty()) {
+					groups.add(new SumTask(group, groupSubtracted));
+					group = new ArrayList<Node>();
+					groupSubtracted = new ArrayList<Boolean>();
+					cost = 0;
+				}
+			}
+			
+			for (int i = 0; i < groups.size() - 1; i++) {
+				fork(groups.get(i));
+			}
+			
+			SumTask last = groups.get(groups.size() - 1);
+			BigDecimal lastValue = null;
+			RuntimeException lastError = null;
+			try {
+				lastValue = this.sum(last.terms, last.subtracted);
+			} catch (RuntimeException e) {
+				// As sequentially, an error on a previous term comes first
+				lastError = e;
+			}
+			
+			BigDecimal value = null;
+			for (int i = 0; i < groups.size() - 1; i++) {
+				BigDecimal groupValue = groups.get(i).join();
+				value = value == null ? groupValue : value.add(groupValue);
+			}
+			
+			if (lastError != null) {
+				throw lastError;
+			}
+			
+			return value == null ? lastValue : value.add(lastValue);
+		}
+		
+		/**
+		 * Sequentially adds a group of terms of a chain of sums.
+		 * 
+		 * @param terms
+		 *            the terms.
+		 * @param subtracted
+		 *            whether each term is subtracted.
+		 * @return sum of the terms.
+		 */
+		private BigDecimal sum(List<Node> terms, List<Boolean> subtracted) {
+			BigDecimal value = null;
+			for (int i = 0; i < terms.size(); i++) {
+				BigDecimal term = this.evaluate(terms.get(i));
+				if (subtracted.get(i)) {
+					term = term.negate();
+				}
+				
+				value = value == null ? term : value.add(term);
+			}
+			
+			return value;
+		}
+	}
+	
+	private static boolean isSum(BinaryNode operation) {
+		return operation.getOperator() == TypeEnum.PLUS || operation.getOperator() == TypeEnum.MINUS;
+	}
+	
+	/**
+	 * Schedules a task in the pool. Threads outside the pool, such as callers
+	 * helping the common pool, must submit it instead of forking.
+	 * 
+	 * @param task
+	 *            the task.
+	 * @return the same task.
+	 */
+	private <T extends ForkJoinTask<?>> T fork(T task) {
+		if (ForkJoinTask.getPool() == this.pool) {
+			task.fork();
+		} else {
+			this.pool.execute(task);
+		}
+		
+		return task;
+	}
+	
+	/**
+	 * Adds a group of terms of a chain of sums inside the pool.
+	 */
+	private class SumTask extends RecursiveTask<BigDecimal> {
+		private static final long serialVersionUID = 1L;
+		
+		private List<Node> terms;
+		private List<Boolean> subtracted;
+		
+		public SumTask(List<Node> terms, List<Boolean> subtracted) {
+			this.terms = terms;
+			this.subtracted = subtracted;
+		}
+		
+		@Override
+		protected BigDecimal compute() {
+			return worker.sum(this.terms, this.subtracted);
+		}
+	}
+	
+	/**
+	 * Evaluates a subtree inside the pool.
+	 */
+	private class EvaluationTask extends RecursiveTask<BigDecimal> {
+		private static final long serialVersionUID = 1L;
+		
+		private Node node;
+		
+		public EvaluationTask(Node node) {
+			this.node = node;
+		}
+		
+		@Override
+		protected BigDecimal compute() {
+			return worker.evaluate(this.node);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package tree;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import util.ValueMap;
+import exception.EvaluationException;
+
+/**
+ * A set of named expressions sharing their common subexpressions, as
+ * compiled by {@link parser.RulebookCompiler}.
+ * 
+ * @author mauren
+ */
+public class Rulebook {
+	private Map<String, Node> formulas;
+	private int roundingPrecision;
+	private RoundingMode roundingMode;
+	
+	/**
+	 * Constructs a new rulebook.
+	 * 
+	 * @param formulas
+	 *            root node of each expression, by name.
+	 * @param roundingPrecision
+	 *            rounding precision of the results.
+	 * @param roundingMode
+	 *            rounding mode of the results.
+	 */
+	public Rulebook(Map<String, Node> formulas, int roundingPrecision, RoundingMode roundingMode) {
+		this.formulas = new LinkedHashMap<String, Node>(formulas);
+		this.roundingPrecision = roundingPrecision;
+		this.roundingMode = roundingMode;
+	}
+	
+	/**
+	 * Evaluates every expression in a single pass, in which each shared
+	 * subexpression is computed only once.
+	 * 
+	 * @param values
+	 *            values to translate identifiers.
+	 * @return value of each expression, by name, in the order they were added.
+	 * @throws EvaluationException
+	 *             when an expression cannot be evaluated, naming it.
+	 */
+	public Map<String, BigDecimal> evaluate(ValueMap values) throws EvaluationException {
+		return this.evaluate(values, null);
+	}
+	
+	/**
+	 * Evaluates every expression in a single pass, in which each shared
+	 * subexpression is computed only once. An expression which cannot be
+	 * evaluated, such as one with a missing variable or a division by zero,
+	 * does not stop the others.
+	 * 
+	 * @param values
+	 *            values to translate identifiers.
+	 * @param errors
+	 *            map where the failure of each expression which cannot be
+	 *            evaluated is put, by name, or null to throw the first one.
+	 * @return value of each expression evaluated, by name, in the order they
+	 *         were added.
+	 * @throws EvaluationException
+	 *             when an expression cannot be evaluated and errors are not
+	 *             being collected.
+	 */
+	public Map<String, BigDecimal> evaluate(ValueMap values, Map<String, EvaluationException> errors)
+			throws EvaluationException {
+		MemoizingEvaluator evaluator = new MemoizingEvaluator(values, roundingPrecision, roundingMode);
+		
+		Map<String, BigDecimal> results = new LinkedHashMap<String, BigDecimal>();
+		for (Map.Entry<String, Node> formula : formulas.entrySet()) {
+			BigDecimal result;
+			try {
+				result = evaluator.evaluate(formula.getValue());
+			} catch (RuntimeException e) {
+				EvaluationException error = new EvaluationException(formula.getKey(), e);
+				if (errors == null) {
+					throw error;
+				}
+				
+				errors.put(formula.getKey(), error);
+				continue;
+			}
+			
+			results.put(formula.getKey(), result.setScale(roundingPrecision, roundingMode));
+		}
+		
+		return results;
+	}
+	
+	public Map<String, Node> getFormulas() {
+		return Collections.unmodifiableMap(formulas);
+	}
+}
@@ -1,5 +1,9 @@
 package util;
 
+import java.math.BigDecimal;
+
+import enumeration.TypeEnum;
+
 public class Utils {
 	public static <T> T nvl(T n, T v) {
 		if (n == null) {
@@ -8,4 +12,71 @@ public class Utils {
 
 		return n;
 	}
+
+	/**
+	 * Gets the truth value of a number: zero is false, anything else is true.
+	 */
+	public static boolean isTrue(BigDecimal value) {
+		return value.signum() != 0;
+	}
+
+	/**
+	 * Gets the number standing for a truth value: one for true, zero for
+	 * false.
+	 */
+	public static BigDecimal toDecimal(boolean value) {
+		return value ? BigDecimal.ONE : BigDecimal.ZERO;
+	}
+
+	/**
+	 * Checks whether a string of digits and dots is a number: it must have at
+	 * least one digit and at most one dot.
+	 */
+	public static boolean isNumber(String text) {
+		boolean digit = false;
+		boolean dot = false;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '.') {
+				if (dot) {
+					return false;
+				}
+
+				dot = true;
+			} else if (c >= '0' && c <= '9') {
+				digit = true;
+			} else {
+				return false;
+			}
+		}
+
+		return digit;
+	}
+
+	/**
+	 * Compares two numbers, regardless of their scale.
+	 * 
+	 * @param operator
+	 *            one of LESS, LESS_EQUAL, GREATER, GREATER_EQUAL, EQUAL or
+	 *            NOT_EQUAL.
+	 */
+	public static boolean compare(TypeEnum operator, BigDecimal op1, BigDecimal op2) {
+		int comparison = op1.compareTo(op2);
+		switch (operator) {
+		case LESS:
+			return comparison < 0;
+		case LESS_EQUAL:
+			return comparison <= 0;
+		case GREATER:
+			return comparison > 0;
+		case GREATER_EQUAL:
+			return comparison >= 0;
+		case EQUAL:
+			return comparison == 0;
+		case NOT_EQUAL:
+			return comparison != 0;
+		default:
+			throw new IllegalArgumentException("not a comparison operator: " + operator);
+		}
+	}
 }